@@ -0,0 +1,103 @@
+package com.mask.benchmark;
+
+import com.mask.util.MaskBuffer;
+import com.mask.util.MaskingUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * Throughput of each MaskingUtils technique over realistic values of every
+ * sensitive column kind. Run through BenchmarkRunner to also get allocation per op.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MaskingUtilsBenchmark {
+
+    // Power of two so the cursor can wrap with a mask
+    private static final int SAMPLE_COUNT = 4096;
+
+    @Param({"email", "phone", "pan", "aadhaar", "card", "date"})
+    private String kind;
+
+    private String[] values;
+    private int cursor;
+    private UnaryOperator<String> compiledDateShift;
+    private final MaskBuffer buffer = new MaskBuffer();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        values = SampleData.generate(kind, SAMPLE_COUNT, 42L);
+        cursor = 0;
+        compiledDateShift = MaskingUtils.compileTechnique("DATE_SHIFT", kind);
+        MaskingUtils.setHmacKey("benchmark-secret".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String nextValue() {
+        cursor = (cursor + 1) & (SAMPLE_COUNT - 1);
+        return values[cursor];
+    }
+
+    @Benchmark
+    public String fullMask() {
+        return MaskingUtils.fullMask(nextValue());
+    }
+
+    @Benchmark
+    public int fullMaskToBuffer() throws IOException {
+        // As the CSV and text writers call it: into a reused buffer
+        MaskingUtils.fullMask(nextValue(), buffer.reset());
+        return buffer.length();
+    }
+
+    @Benchmark
+    public String partialMask() {
+        return MaskingUtils.partialMask(nextValue());
+    }
+
+    @Benchmark
+    public int partialMaskToBuffer() throws IOException {
+        MaskingUtils.partialMask(nextValue(), buffer.reset());
+        return buffer.length();
+    }
+
+    @Benchmark
+    public String randomReplace() {
+        // Column named after the kind, as in a typical upload
+        return MaskingUtils.randomReplace(nextValue(), kind);
+    }
+
+    @Benchmark
+    public String hashMask() {
+        return MaskingUtils.hashMask(nextValue());
+    }
+
+    @Benchmark
+    public String hmacMask() {
+        return MaskingUtils.hmacMask(nextValue());
+    }
+
+    @Benchmark
+    public String dateShift() {
+        return MaskingUtils.dateShift(nextValue());
+    }
+
+    @Benchmark
+    public String dateShiftCompiled() {
+        // As masking jobs run it: compiled once per column
+        return compiledDateShift.apply(nextValue());
+    }
+
+    @Benchmark
+    public Optional<String> detectTypeByValue() {
+        return MaskingUtils.detectTypeByValue(nextValue());
+    }
+}
@@ -0,0 +1,180 @@
+package com.mask.benchmark;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+
+/**
+ * Generates realistic input values for each kind of sensitive column, in the
+ * shapes that show up in uploaded files (mixed separators, prefixes and formats).
+ */
+public final class SampleData {
+
+    private static final String[] FIRST_NAMES = {
+        "aarav", "vivaan", "aditya", "ananya", "diya", "ishaan", "kavya", "rohan",
+        "saanvi", "arjun", "meera", "nikhil", "pooja", "rahul", "sneha", "varun"
+    };
+
+    private static final String[] LAST_NAMES = {
+        "sharma", "patel", "singh", "kumar", "gupta", "verma", "reddy", "nair",
+        "iyer", "menon", "joshi", "das", "mehta", "chopra", "bose", "kulkarni"
+    };
+
+    private static final String[] DOMAINS = {
+        "gmail.com", "yahoo.co.in", "outlook.com", "rediffmail.com", "company.in", "example.org"
+    };
+
+    private static final DateTimeFormatter[] DATE_FORMATS = {
+        DateTimeFormatter.ofPattern("yyyy-MM-dd"),
+        DateTimeFormatter.ofPattern("dd/MM/yyyy"),
+        DateTimeFormatter.ofPattern("dd-MM-yyyy")
+    };
+
+    private SampleData() {
+    }
+
+    /**
+     * Values of the given kind: email, phone, pan, aadhaar, card or date
+     */
+    public static String[] generate(String kind, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = next(kind, random);
+        }
+        return values;
+    }
+
+    private static String next(String kind, SplittableRandom random) {
+        switch (kind) {
+            case "email":
+                return email(random);
+            case "phone":
+                return phone(random);
+            case "pan":
+                return pan(random);
+            case "aadhaar":
+                return aadhaar(random);
+            case "card":
+                return card(random);
+            case "date":
+                return date(random);
+            default:
+                throw new IllegalArgumentException("Unknown sample kind: " + kind);
+        }
+    }
+
+    private static String email(SplittableRandom random) {
+        String first = pick(FIRST_NAMES, random);
+        String last = pick(LAST_NAMES, random);
+        String local;
+        switch (random.nextInt(3)) {
+            case 0:
+                local = first + "." + last;
+                break;
+            case 1:
+                local = first.charAt(0) + last + random.nextInt(100);
+                break;
+            default:
+                local = first + "_" + last + (1960 + random.nextInt(45));
+                break;
+        }
+        return local + "@" + pick(DOMAINS, random);
+    }
+
+    private static String phone(SplittableRandom random) {
+        String number = (char) ('6' + random.nextInt(4)) + digits(random, 9);
+        switch (random.nextInt(4)) {
+            case 0:
+                return "+91 " + number.substring(0, 5) + " " + number.substring(5);
+            case 1:
+                return "+91-" + number;
+            case 2:
+                return number.substring(0, 3) + "-" + number.substring(3, 6) + "-" + number.substring(6);
+            default:
+                return number;
+        }
+    }
+
+    private static String pan(SplittableRandom random) {
+        // Fourth letter is the holder type, P for individuals
+        return letters(random, 3) + (random.nextInt(5) == 0 ? "C" : "P") + letters(random, 1)
+            + digits(random, 4) + letters(random, 1);
+    }
+
+    private static String aadhaar(SplittableRandom random) {
+        String number = (char) ('2' + random.nextInt(8)) + digits(random, 11);
+        if (random.nextBoolean()) {
+            return number.substring(0, 4) + " " + number.substring(4, 8) + " " + number.substring(8);
+        }
+        return number;
+    }
+
+    private static String card(SplittableRandom random) {
+        String prefix;
+        int length;
+        switch (random.nextInt(3)) {
+            case 0:
+                prefix = "4";
+                length = 16;
+                break;
+            case 1:
+                prefix = "5" + (1 + random.nextInt(5));
+                length = 16;
+                break;
+            default:
+                prefix = random.nextBoolean() ? "34" : "37";
+                length = 15;
+                break;
+        }
+        String body = prefix + digits(random, length - prefix.length() - 1);
+        String number = body + luhnCheckDigit(body);
+        if (length == 16 && random.nextBoolean()) {
+            return number.substring(0, 4) + " " + number.substring(4, 8) + " "
+                + number.substring(8, 12) + " " + number.substring(12);
+        }
+        return number;
+    }
+
+    private static String date(SplittableRandom random) {
+        LocalDate date = LocalDate.of(1950, 1, 1).plusDays(random.nextInt(365 * 75));
+        return date.format(DATE_FORMATS[random.nextInt(DATE_FORMATS.length)]);
+    }
+
+    private static char luhnCheckDigit(String body) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = body.length() - 1; i >= 0; i--) {
+            int digit = body.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
+    }
+
+    private static String digits(SplittableRandom random, int count) {
+        char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = (char) ('0' + random.nextInt(10));
+        }
+        return new String(chars);
+    }
+
+    private static String letters(SplittableRandom random, int count) {
+        char[] chars = new char[count];
+        for (int i = 0; i < count; i++) {
+            chars[i] = (char) ('A' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    private static String pick(String[] values, SplittableRandom random) {
+        return values[random.nextInt(values.length)];
+    }
+}
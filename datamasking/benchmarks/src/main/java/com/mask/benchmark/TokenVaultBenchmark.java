@@ -0,0 +1,85 @@
+package com.mask.benchmark;
+
+import com.mask.service.TokenVault;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * Token vault lookups of values already stored, from several threads at once as the
+ * parallel masking workers call it. Hits take no lock, so throughput should grow with
+ * the thread count; compare -t 1 against the default.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class TokenVaultBenchmark {
+
+    // Power of two so the cursor can wrap with a mask
+    private static final int VALUE_COUNT = 65_536;
+    private static final UnaryOperator<String> GENERATOR = value -> "tok-" + value.hashCode();
+
+    private Path vaultDir;
+    private TokenVault vault;
+    private String[] values;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            // Threads start apart so they don't walk the same slots in step
+            position = (int) Thread.currentThread().getId() * 7919;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        vaultDir = Files.createTempDirectory("vault-benchmark");
+        vault = new TokenVault();
+        set("enabled", true);
+        set("vaultDir", vaultDir.toString());
+        set("capacityBits", 20);
+        set("lockStripes", 64);
+        set("hmacKey", "benchmark-secret");
+        vault.open();
+
+        values = SampleData.generate("email", VALUE_COUNT, 42L);
+        for (String value : values) {
+            vault.tokenize("email", value, GENERATOR);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        vault.close();
+        try (Stream<Path> files = Files.walk(vaultDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public String storedValue(Cursor cursor) {
+        cursor.position = (cursor.position + 1) & (VALUE_COUNT - 1);
+        return vault.tokenize("email", values[cursor.position], GENERATOR);
+    }
+
+    // Configuration is injected by Spring in the application
+    private void set(String name, Object value) throws ReflectiveOperationException {
+        Field field = TokenVault.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(vault, value);
+    }
+}
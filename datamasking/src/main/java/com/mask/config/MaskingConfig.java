@@ -0,0 +1,23 @@
+package com.mask.config;
+
+import com.mask.util.MaskingUtils;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.charset.StandardCharsets;
+
+@Configuration
+public class MaskingConfig {
+
+    // Secret for HMAC_MASK; the technique is offered only when this is set
+    @Value("${app.masking.hash.hmac-key:}")
+    private String hmacKey;
+
+    @PostConstruct
+    public void init() {
+        if (!hmacKey.isBlank()) {
+            MaskingUtils.setHmacKey(hmacKey.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
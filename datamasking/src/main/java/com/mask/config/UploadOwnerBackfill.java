@@ -0,0 +1,54 @@
+package com.mask.config;
+
+import com.mask.model.User;
+import com.mask.repository.UploadedFileRepository;
+import com.mask.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Gives uploads from before owners were recorded an owner at startup, since the dashboard
+ * and every file action only see the signed-in user's files
+ */
+@Component
+public class UploadOwnerBackfill {
+
+    @Autowired
+    private UploadedFileRepository uploadedFileRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // Email that receives unowned uploads; with a single registered user, that user does
+    @Value("${app.dashboard.legacy-owner:}")
+    private String legacyOwner;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void assignUnownedUploads() {
+        long unowned = uploadedFileRepository.countByOwnerEmailIsNull();
+        if (unowned == 0) {
+            return;
+        }
+
+        String owner = legacyOwner.trim();
+        if (owner.isEmpty()) {
+            List<User> users = userRepository.findAll();
+            if (users.size() == 1) {
+                owner = users.get(0).getEmail();
+            }
+        }
+        if (owner.isEmpty()) {
+            System.err.println(unowned + " uploads have no owner and are hidden from every dashboard; "
+                + "set app.dashboard.legacy-owner to the email that should receive them");
+            return;
+        }
+
+        int assigned = uploadedFileRepository.assignUnownedFiles(owner);
+        System.out.println("Assigned " + assigned + " uploads without an owner to " + owner);
+    }
+}
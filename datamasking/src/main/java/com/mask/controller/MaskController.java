@@ -4,13 +4,16 @@ import com.mask.model.FileStatus;
 import com.mask.model.UploadedFile;
 import com.mask.repository.UploadedFileRepository;
 import com.mask.service.EmailService;
+import com.mask.service.MaskingJobService;
 import com.mask.service.MaskingService;
 import com.mask.service.StorageService;
-import com.mask.service.UserService;
-import com.mask.model.User;
+import com.mask.service.TechniqueRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -25,7 +28,11 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
 
 @Controller
 public class MaskController {
@@ -36,6 +43,9 @@ public class MaskController {
     @Autowired
     private MaskingService maskingService;
 
+    @Autowired
+    private MaskingJobService maskingJobService;
+
     @Autowired
     private UploadedFileRepository repository;
 
@@ -43,27 +53,59 @@ public class MaskController {
     private EmailService emailService;
 
     @Autowired
-    private UserService userService;
+    private TechniqueRegistry techniqueRegistry;
 
     // Supported file types
     private static final Set<String> SUPPORTED_EXTENSIONS = Set.of(
-        "csv", "txt", "xlsx", "xls", "json"
+        "csv", "txt", "xlsx", "xls", "json", "jsonl", "ndjson"
     );
 
+    @Value("${app.dashboard.page-size:25}")
+    private int dashboardPageSize;
+
     @GetMapping("/upload")
-    public String uploadPage(Model model) {
+    public String uploadPage(@RequestParam(value = "before", required = false) String before,
+                             @RequestParam(value = "beforeId", required = false) Long beforeId,
+                             Model model) {
         if (!isAuthenticated()) {
             return "redirect:/login";
         }
-        
-        List<UploadedFile> files = repository.findAll();
-        // Sort files by upload date descending
-        files.sort((f1, f2) -> f2.getUploadedAt().compareTo(f1.getUploadedAt()));
-        
+
+        String owner = SecurityContextHolder.getContext().getAuthentication().getName();
+        // Fetch one extra row to know whether an older page exists
+        Pageable page = PageRequest.of(0, dashboardPageSize + 1);
+
+        List<UploadedFile> files;
+        LocalDateTime cursor = parseCursor(before);
+        if (cursor != null && beforeId != null) {
+            files = repository.findOwnerPageBefore(owner, cursor, beforeId, page);
+            model.addAttribute("pagedBack", true);
+        } else {
+            files = repository.findByOwnerEmailOrderByUploadedAtDescIdDesc(owner, page);
+        }
+
+        if (files.size() > dashboardPageSize) {
+            files = new ArrayList<>(files.subList(0, dashboardPageSize));
+            UploadedFile last = files.get(files.size() - 1);
+            model.addAttribute("nextBefore", last.getUploadedAt().toString());
+            model.addAttribute("nextBeforeId", last.getId());
+        }
+
         model.addAttribute("files", files);
         return "upload";
     }
 
+    private LocalDateTime parseCursor(String before) {
+        if (before == null || before.isBlank()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(before);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
     @PostMapping("/upload")
     public String handleFileUpload(@RequestParam("file") MultipartFile file,
                                  RedirectAttributes redirectAttributes) {
@@ -93,7 +135,7 @@ public class MaskController {
             String fileExtension = getFileExtension(originalFilename).toLowerCase();
             if (!SUPPORTED_EXTENSIONS.contains(fileExtension)) {
                 redirectAttributes.addFlashAttribute("errorMessage", 
-                    "Unsupported file type. Supported formats: CSV, TXT, XLSX, XLS, JSON");
+                    "Unsupported file type. Supported formats: CSV, TXT, XLSX, XLS, JSON, JSONL, NDJSON");
                 return "redirect:/upload";
             }
 
@@ -113,6 +155,8 @@ public class MaskController {
             uploadedFile.setOriginalFileName(originalFilename);
             uploadedFile.setContentType(file.getContentType());
             uploadedFile.setSize(file.getSize());
+            uploadedFile.setStoredPath(storageService.toStoredPath(storedFilePath));
+            uploadedFile.setOwnerEmail(SecurityContextHolder.getContext().getAuthentication().getName());
             uploadedFile.setStatus(FileStatus.UPLOADED);
             uploadedFile.setMaskedFileName("not_processed");
             uploadedFile = repository.save(uploadedFile);
@@ -136,7 +180,7 @@ public class MaskController {
             return "redirect:/login";
         }
 
-        Optional<UploadedFile> fileOptional = repository.findById(id);
+        Optional<UploadedFile> fileOptional = findOwnedFile(id);
         if (fileOptional.isEmpty()) {
             model.addAttribute("errorMessage", "File not found.");
             return "redirect:/upload";
@@ -150,7 +194,7 @@ public class MaskController {
         try {
             String extension = getFileExtension(uploadedFile.getOriginalFileName()).toLowerCase();
             if ("csv".equals(extension)) {
-                Path storedFilePath = findStoredFile(uploadedFile.getOriginalFileName());
+                Path storedFilePath = findStoredFile(uploadedFile);
                 if (storedFilePath != null && Files.exists(storedFilePath)) {
                     suggestions = maskingService.autoSuggestTechniquesForCSV(storedFilePath);
                 }
@@ -161,7 +205,7 @@ public class MaskController {
         }
 
         model.addAttribute("suggestions", suggestions);
-        model.addAttribute("supportedTechniques", getSupportedTechniques());
+        model.addAttribute("supportedTechniques", techniqueRegistry.getAvailable());
         
         return "select";
     }
@@ -176,13 +220,20 @@ public class MaskController {
             return "redirect:/login";
         }
 
-        Optional<UploadedFile> fileOptional = repository.findById(id);
+        Optional<UploadedFile> fileOptional = findOwnedFile(id);
         if (fileOptional.isEmpty()) {
             redirectAttributes.addFlashAttribute("errorMessage", "File not found.");
             return "redirect:/upload";
         }
 
         UploadedFile uploadedFile = fileOptional.get();
+        FileStatus previousStatus = uploadedFile.getStatus();
+
+        // A repeated submit must not start a second job; a PROCESSING row without a job is left from a restart
+        if (previousStatus == FileStatus.PROCESSING && maskingJobService.isActive(id)) {
+            redirectAttributes.addFlashAttribute("errorMessage", "This file is already being processed.");
+            return "redirect:/upload";
+        }
         
         try {
             // Update status to processing
@@ -208,7 +259,7 @@ public class MaskController {
             }
 
             // Find the stored file
-            Path storedFilePath = findStoredFile(uploadedFile.getOriginalFileName());
+            Path storedFilePath = findStoredFile(uploadedFile);
             if (storedFilePath == null || !Files.exists(storedFilePath)) {
                 throw new RuntimeException("Stored file not found: " + uploadedFile.getOriginalFileName());
             }
@@ -216,31 +267,25 @@ public class MaskController {
             // Generate masked filename
             String maskedFileName = generateMaskedFileName(uploadedFile.getOriginalFileName());
 
-            // Process the file with masking
-            Path maskedFilePath = maskingService.maskFile(
-                storedFilePath, 
-                uploadedFile.getOriginalFileName(),
-                columnTechniques, 
-                globalTechnique, 
-                maskedFileName
-            );
-
-            // Update database record with success status
-            uploadedFile.setMaskedFileName(maskedFilePath.getFileName().toString());
-            uploadedFile.setStatus(FileStatus.COMPLETED);
-            uploadedFile.setErrorMessage(null);
-            repository.save(uploadedFile);
-
-            // Send completion email notification
+            // Hand the file to the job queue; status is polled from /status/{id}
             try {
-                sendCompletionNotification(uploadedFile, columnTechniques, globalTechnique);
-            } catch (Exception emailError) {
-                System.err.println("Failed to send completion email: " + emailError.getMessage());
-                // Don't fail the whole process due to email issues
+                maskingJobService.submit(uploadedFile, storedFilePath, columnTechniques, globalTechnique,
+                    maskedFileName, SecurityContextHolder.getContext().getAuthentication().getName());
+            } catch (IllegalStateException alreadyRunning) {
+                // Submitted twice at once; the running job owns the status
+                redirectAttributes.addFlashAttribute("errorMessage", "This file is already being processed.");
+                return "redirect:/upload";
+            } catch (RejectedExecutionException queueFull) {
+                uploadedFile.setStatus(previousStatus);
+                repository.save(uploadedFile);
+
+                redirectAttributes.addFlashAttribute("errorMessage", 
+                    "Too many files are being processed right now. Please try again in a few minutes.");
+                return "redirect:/select/" + id;
             }
 
             redirectAttributes.addFlashAttribute("successMessage", 
-                "File processed successfully! Download your masked file below.");
+                "File queued for masking. You can download it below once processing completes.");
             
             return "redirect:/upload";
 
@@ -259,6 +304,38 @@ public class MaskController {
         }
     }
 
+    @GetMapping("/status/{id}")
+    @ResponseBody
+    public Map<String, Object> jobStatus(@PathVariable("id") Long id) {
+        Map<String, Object> response = new HashMap<>();
+        
+        if (!isAuthenticated()) {
+            response.put("error", "Authentication required");
+            return response;
+        }
+
+        Optional<UploadedFile> fileOptional = findOwnedFile(id);
+        if (fileOptional.isEmpty()) {
+            response.put("error", "File not found");
+            return response;
+        }
+
+        UploadedFile uploadedFile = fileOptional.get();
+        response.put("id", uploadedFile.getId());
+        response.put("status", uploadedFile.getStatus());
+        response.put("errorMessage", uploadedFile.getErrorMessage());
+        
+        maskingJobService.getProgress(id).ifPresent(progress -> {
+            response.put("rowsProcessed", progress.getRowsProcessed());
+            response.put("bytesPerSecond", progress.getBytesPerSecond());
+            response.put("etaSeconds", progress.getEtaSeconds());
+            response.put("cacheHits", progress.getCacheHits());
+            response.put("cacheMisses", progress.getCacheMisses());
+        });
+        
+        return response;
+    }
+
     @GetMapping("/download/{id}")
     public ResponseEntity<Resource> downloadMaskedFile(@PathVariable("id") Long id) {
         if (!isAuthenticated()) {
@@ -266,7 +343,7 @@ public class MaskController {
         }
 
         try {
-            Optional<UploadedFile> fileOptional = repository.findById(id);
+            Optional<UploadedFile> fileOptional = findOwnedFile(id);
             if (fileOptional.isEmpty()) {
                 return ResponseEntity.notFound().build();
             }
@@ -277,7 +354,7 @@ public class MaskController {
                 return ResponseEntity.badRequest().build();
             }
 
-            Path maskedFilePath = Path.of("./storage").resolve(uploadedFile.getMaskedFileName());
+            Path maskedFilePath = findMaskedFile(uploadedFile);
             if (!Files.exists(maskedFilePath)) {
                 return ResponseEntity.notFound().build();
             }
@@ -308,7 +385,7 @@ public class MaskController {
         }
 
         try {
-            Optional<UploadedFile> fileOptional = repository.findById(id);
+            Optional<UploadedFile> fileOptional = findOwnedFile(id);
             if (fileOptional.isEmpty()) {
                 response.put("success", false);
                 response.put("message", "File not found");
@@ -319,8 +396,11 @@ public class MaskController {
             
             // Delete physical files
             try {
-                Path storedFile = findStoredFile(uploadedFile.getOriginalFileName());
-                if (storedFile != null && Files.exists(storedFile)) {
+                // Identical uploads share one content-addressed file; keep it while others use it
+                Path storedFile = findStoredFile(uploadedFile);
+                boolean sharedContent = uploadedFile.getStoredPath() != null
+                    && repository.countByStoredPath(uploadedFile.getStoredPath()) > 1;
+                if (storedFile != null && !sharedContent && Files.exists(storedFile)) {
                     Files.delete(storedFile);
                 }
                 
@@ -328,7 +408,7 @@ public class MaskController {
                     uploadedFile.getMaskedFileName() != null && 
                     !uploadedFile.getMaskedFileName().equals("not_processed")) {
                     
-                    Path maskedFile = Path.of("./storage").resolve(uploadedFile.getMaskedFileName());
+                    Path maskedFile = findMaskedFile(uploadedFile);
                     if (Files.exists(maskedFile)) {
                         Files.delete(maskedFile);
                     }
@@ -363,7 +443,7 @@ public class MaskController {
         }
 
         try {
-            Optional<UploadedFile> fileOptional = repository.findById(id);
+            Optional<UploadedFile> fileOptional = findOwnedFile(id);
             if (fileOptional.isEmpty()) {
                 response.put("error", "File not found");
                 return response;
@@ -373,7 +453,7 @@ public class MaskController {
             String extension = getFileExtension(uploadedFile.getOriginalFileName()).toLowerCase();
             
             if ("csv".equals(extension)) {
-                Path storedFilePath = findStoredFile(uploadedFile.getOriginalFileName());
+                Path storedFilePath = findStoredFile(uploadedFile);
                 if (storedFilePath != null && Files.exists(storedFilePath)) {
                     Map<String, String> suggestions = maskingService.autoSuggestTechniquesForCSV(storedFilePath);
                     response.put("suggestions", suggestions);
@@ -402,6 +482,14 @@ public class MaskController {
                !"anonymousUser".equals(authentication.getPrincipal());
     }
 
+    /**
+     * File by id when the signed-in user owns it; other users' files read as not found
+     */
+    private Optional<UploadedFile> findOwnedFile(Long id) {
+        String owner = SecurityContextHolder.getContext().getAuthentication().getName();
+        return repository.findByIdAndOwnerEmail(id, owner);
+    }
+
     private String getFileExtension(String filename) {
         if (filename == null || !filename.contains(".")) {
             return "";
@@ -427,23 +515,41 @@ public class MaskController {
         return columnTechniques;
     }
 
-    private Path findStoredFile(String originalFileName) {
+    private Path findStoredFile(UploadedFile uploadedFile) {
+        if (uploadedFile.getStoredPath() != null) {
+            return storageService.resolve(uploadedFile.getStoredPath());
+        }
+        
+        // Uploads from before stored paths were recorded: fall back to scanning by name
         try {
-            Path storageDir = Path.of("./storage");
+            Path storageDir = storageService.getRoot();
             if (!Files.exists(storageDir)) {
                 return null;
             }
             
-            return Files.list(storageDir)
-                    .filter(path -> path.getFileName().toString().endsWith("_" + originalFileName))
-                    .findFirst()
-                    .orElse(null);
+            String originalFileName = uploadedFile.getOriginalFileName();
+            try (Stream<Path> files = Files.list(storageDir)) {
+                return files
+                        .filter(path -> path.getFileName().toString().endsWith("_" + originalFileName))
+                        .findFirst()
+                        .orElse(null);
+            }
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Masked output is written next to the stored input file
+     */
+    private Path findMaskedFile(UploadedFile uploadedFile) {
+        if (uploadedFile.getStoredPath() != null) {
+            return storageService.resolve(uploadedFile.getStoredPath()).resolveSibling(uploadedFile.getMaskedFileName());
+        }
+        return storageService.getRoot().resolve(uploadedFile.getMaskedFileName());
+    }
+
     private String generateMaskedFileName(String originalFileName) {
         String nameWithoutExtension = originalFileName.contains(".") 
             ? originalFileName.substring(0, originalFileName.lastIndexOf("."))
@@ -455,71 +561,4 @@ public class MaskController {
         
         return System.currentTimeMillis() + "_" + nameWithoutExtension + "_masked" + extension;
     }
-
-    private Map<String, String> getSupportedTechniques() {
-        Map<String, String> techniques = new LinkedHashMap<>();
-        techniques.put("FULL_MASK", "Full Mask - Replace all characters with asterisks (*)");
-        techniques.put("PARTIAL_MASK", "Partial Mask - Show first/last characters, mask middle");
-        techniques.put("RANDOM_REPLACE", "Random Replace - Generate realistic fake data");
-        techniques.put("HASH_MASK", "Hash Mask - Create irreversible SHA-256 hash");
-        techniques.put("DATE_SHIFT", "Date Shift - Shift dates by random days (±180 days)");
-        return techniques;
-    }
-
-    private void sendCompletionNotification(UploadedFile uploadedFile, 
-                                          Map<String, String> columnTechniques, 
-                                          String globalTechnique) {
-        try {
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            if (authentication != null && authentication.isAuthenticated()) {
-                String userEmail = authentication.getName();
-                Optional<User> userOptional = userService.findByEmail(userEmail);
-                
-                if (userOptional.isPresent()) {
-                    User user = userOptional.get();
-                    
-                    StringBuilder emailContent = new StringBuilder();
-                    emailContent.append("Dear ").append(user.getName()).append(",\n\n");
-                    emailContent.append("Your file masking process has been completed successfully.\n\n");
-                    emailContent.append("File Details:\n");
-                    emailContent.append("- Original File: ").append(uploadedFile.getOriginalFileName()).append("\n");
-                    emailContent.append("- File Size: ").append(formatFileSize(uploadedFile.getSize())).append("\n");
-                    emailContent.append("- Processing Time: ").append(new Date()).append("\n\n");
-                    
-                    if (globalTechnique != null && !globalTechnique.trim().isEmpty()) {
-                        emailContent.append("Global Masking Technique: ").append(globalTechnique).append("\n\n");
-                    }
-                    
-                    if (!columnTechniques.isEmpty()) {
-                        emailContent.append("Column-Specific Masking:\n");
-                        columnTechniques.forEach((column, technique) -> 
-                            emailContent.append("- ").append(column).append(": ").append(technique).append("\n"));
-                        emailContent.append("\n");
-                    }
-                    
-                    emailContent.append("Important Security Notes:\n");
-                    emailContent.append("- The masking process is irreversible\n");
-                    emailContent.append("- Original data cannot be recovered from masked data\n");
-                    emailContent.append("- Please verify the masked data meets your requirements\n\n");
-                    emailContent.append("You can download your masked file from the application dashboard.\n\n");
-                    emailContent.append("Best regards,\n");
-                    emailContent.append("DataMasking Team");
-                    
-                    // This would need to be implemented in EmailService
-                    // emailService.sendMaskingCompletionEmail(userEmail, 
-                    //     "File Masking Completed - " + uploadedFile.getOriginalFileName(), 
-                    //     emailContent.toString());
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            // Log error but don't fail the process
-        }
-    }
-    
-    private String formatFileSize(long size) {
-        if (size < 1024) return size + " bytes";
-        if (size < 1024 * 1024) return String.format("%.1f KB", size / 1024.0);
-        return String.format("%.1f MB", size / (1024.0 * 1024.0));
-    }
-}
\ No newline at end of file
+}
@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "uploaded_files")
+@Table(name = "uploaded_files", indexes = {
+    @Index(name = "idx_uploaded_files_stored_path", columnList = "stored_path"),
+    @Index(name = "idx_uploaded_files_owner_uploaded", columnList = "owner_email, uploaded_at, id")
+})
 public class UploadedFile {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -15,12 +18,24 @@ public class UploadedFile {
     private String contentType;
     private long size;
 
+    // Location under the storage directory, relative (sharded content-addressed layout)
+    @Column(name = "stored_path", length = 512)
+    private String storedPath;
+
+    // Email of the uploading user; only the owner sees the file or acts on it
+    @Column(name = "owner_email")
+    private String ownerEmail;
+
     @Enumerated(EnumType.STRING)
     private FileStatus status = FileStatus.UPLOADED;
 
     private LocalDateTime uploadedAt = LocalDateTime.now();
     private String errorMessage;
 
+    // Seed of the random masking techniques, fixed on first run so reruns give identical output
+    @Column(name = "masking_seed")
+    private Long maskingSeed;
+
     public UploadedFile() {}
 
     // getters & setters
@@ -34,10 +49,16 @@ public class UploadedFile {
     public void setContentType(String contentType) { this.contentType = contentType; }
     public long getSize() { return size; }
     public void setSize(long size) { this.size = size; }
+    public String getStoredPath() { return storedPath; }
+    public void setStoredPath(String storedPath) { this.storedPath = storedPath; }
+    public String getOwnerEmail() { return ownerEmail; }
+    public void setOwnerEmail(String ownerEmail) { this.ownerEmail = ownerEmail; }
     public FileStatus getStatus() { return status; }
     public void setStatus(FileStatus status) { this.status = status; }
     public LocalDateTime getUploadedAt() { return uploadedAt; }
     public void setUploadedAt(LocalDateTime uploadedAt) { this.uploadedAt = uploadedAt; }
     public String getErrorMessage() { return errorMessage; }
     public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+    public Long getMaskingSeed() { return maskingSeed; }
+    public void setMaskingSeed(Long maskingSeed) { this.maskingSeed = maskingSeed; }
 }
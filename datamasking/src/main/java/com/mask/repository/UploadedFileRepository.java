@@ -2,10 +2,13 @@ package com.mask.repository;
 
 import com.mask.model.FileStatus;
 import com.mask.model.UploadedFile;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -24,4 +27,37 @@ public interface UploadedFileRepository extends JpaRepository<UploadedFile, Long
     List<UploadedFile> findOldFiles(@Param("cutoff") LocalDateTime cutoff, @Param("statuses") List<FileStatus> statuses);
     
     Long countByStatus(FileStatus status);
-}
\ No newline at end of file
+    
+    long countByStoredPath(String storedPath);
+
+    /**
+     * First page of a user's files, newest first
+     */
+    List<UploadedFile> findByOwnerEmailOrderByUploadedAtDescIdDesc(String ownerEmail, Pageable pageable);
+
+    /**
+     * Next page of a user's files after the (uploadedAt, id) cursor, newest first
+     */
+    @Query("SELECT f FROM UploadedFile f WHERE f.ownerEmail = :owner " +
+           "AND (f.uploadedAt < :uploadedAt OR (f.uploadedAt = :uploadedAt AND f.id < :id)) " +
+           "ORDER BY f.uploadedAt DESC, f.id DESC")
+    List<UploadedFile> findOwnerPageBefore(@Param("owner") String ownerEmail,
+                                           @Param("uploadedAt") LocalDateTime uploadedAt,
+                                           @Param("id") Long id,
+                                           Pageable pageable);
+
+    /**
+     * A file by id, only when the given user owns it
+     */
+    Optional<UploadedFile> findByIdAndOwnerEmail(Long id, String ownerEmail);
+
+    long countByOwnerEmailIsNull();
+
+    /**
+     * Give uploads from before owners were recorded to one user
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadedFile f SET f.ownerEmail = :owner WHERE f.ownerEmail IS NULL")
+    int assignUnownedFiles(@Param("owner") String ownerEmail);
+}
@@ -0,0 +1,56 @@
+package com.mask.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Fixed-size reservoir of non-empty sample values per column, so memory stays
+ * the same however many rows are offered.
+ */
+public class ColumnSampler {
+
+    // Fixed seed keeps suggestions stable when the same file is analysed again
+    private static final long SEED = 0x5EED_CAFEL;
+
+    private final String[][] reservoirs;
+    private final long[] seen;
+    private final Random random = new Random(SEED);
+
+    public ColumnSampler(int columns, int samplesPerColumn) {
+        this.reservoirs = new String[columns][Math.max(1, samplesPerColumn)];
+        this.seen = new long[columns];
+    }
+
+    /**
+     * Offer a value for a column; blank values are ignored
+     */
+    public void offer(int column, String value) {
+        if (column >= reservoirs.length || value == null || value.trim().isEmpty()) {
+            return;
+        }
+
+        String[] reservoir = reservoirs[column];
+        long count = ++seen[column];
+        if (count <= reservoir.length) {
+            reservoir[(int) count - 1] = value.trim();
+        } else {
+            long slot = (long) (random.nextDouble() * count);
+            if (slot < reservoir.length) {
+                reservoir[(int) slot] = value.trim();
+            }
+        }
+    }
+
+    /**
+     * Samples collected for a column, in reservoir order
+     */
+    public List<String> samples(int column) {
+        if (column >= reservoirs.length) {
+            return List.of();
+        }
+        int size = (int) Math.min(seen[column], reservoirs[column].length);
+        return new ArrayList<>(Arrays.asList(reservoirs[column]).subList(0, size));
+    }
+}
@@ -0,0 +1,305 @@
+package com.mask.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * RFC 4180 tokenizer working directly on UTF-8 bytes, for the masker's dialect: comma
+ * separated, double-quoted, records ended by CR, LF or CRLF. Values come out as the
+ * commons-csv default format with trim and ignoreSurroundingSpaces reads them: empty
+ * lines are skipped and whitespace around fields and quoted values is dropped.
+ * <p>
+ * Fields stay byte slices of the input. Only fields whose value is asked for are
+ * decoded; the rest can be copied to the output as they are.
+ */
+final class CsvByteTokenizer {
+
+    private static final byte SIMPLE = 0;
+    private static final byte QUOTED = 1;
+    private static final byte QUOTED_WITH_ESCAPES = 2;
+
+    // Field flags gathered while scanning a simple field
+    private static final byte HAS_QUOTE = 1;
+    private static final byte INVALID_UTF8 = 2;
+
+    // Byte classes for the simple field scan
+    private static final byte ORDINARY = 0;
+    private static final byte FIELD_END = 1;
+    private static final byte QUOTE = 2;
+    private static final byte NON_ASCII = 3;
+    private static final byte[] CLASSES = new byte[256];
+
+    static {
+        CLASSES[','] = FIELD_END;
+        CLASSES['\n'] = FIELD_END;
+        CLASSES['\r'] = FIELD_END;
+        CLASSES['"'] = QUOTE;
+        for (int b = 0x80; b < 0x100; b++) {
+            CLASSES[b] = NON_ASCII;
+        }
+    }
+
+    private final byte[] data;
+    private final int limit;
+    private int pos;
+    private int size;
+    // Per field: raw slice up to the delimiter, the value slice inside it, kind and flags
+    private int[] rawStarts = new int[16];
+    private int[] rawEnds = new int[16];
+    private int[] valueStarts = new int[16];
+    private int[] valueEnds = new int[16];
+    private byte[] kinds = new byte[16];
+    private byte[] flags = new byte[16];
+
+    CsvByteTokenizer(byte[] data, int offset, int limit) {
+        this.data = data;
+        this.pos = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * Move to the next record, false at the end of the input
+     * @throws IOException on an unterminated quoted field or text after a closing quote
+     */
+    boolean nextRecord() throws IOException {
+        size = 0;
+        while (pos < limit && isLineBreak(data[pos])) {
+            pos++;
+        }
+        if (pos >= limit) {
+            return false;
+        }
+        while (true) {
+            int fieldStart = pos;
+            int p = pos;
+            int whitespace;
+            while (p < limit && !isLineBreak(data[p]) && (whitespace = whitespaceLength(p)) > 0) {
+                p += whitespace;
+            }
+            if (p < limit && data[p] == '"') {
+                p = scanQuoted(fieldStart, p);
+            } else {
+                p = scanSimple(fieldStart, p);
+            }
+
+            if (p >= limit) {
+                pos = limit;
+                return true;
+            }
+            if (data[p] == ',') {
+                pos = p + 1;
+                continue;
+            }
+            // CRLF is one record end
+            pos = data[p] == '\r' && p + 1 < limit && data[p + 1] == '\n' ? p + 2 : p + 1;
+            return true;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Whether printing the field's value gives back its raw bytes: unquoted, valid UTF-8,
+     * nothing trimmed, and nothing the printer would quote
+     */
+    boolean isPlain(int field) {
+        if (kinds[field] != SIMPLE || flags[field] != 0) {
+            return false;
+        }
+        int start = rawStarts[field];
+        int end = rawEnds[field];
+        if (start == end) {
+            return false;
+        }
+        // The printer quotes values starting with a char up to '#'; whitespace would have been trimmed
+        int first = data[start] & 0xFF;
+        int last = data[end - 1] & 0xFF;
+        return first > '#' && whitespaceLength(start) == 0
+            && last > ' ' && !(last >= 0x80 && end - start >= 3 && whitespaceLength(end - 3) == 3);
+    }
+
+    void copyRaw(int field, Utf8Output out) throws IOException {
+        out.write(data, rawStarts[field], rawEnds[field] - rawStarts[field]);
+    }
+
+    String value(int field) {
+        int start = valueStarts[field];
+        int end = valueEnds[field];
+        if (kinds[field] == SIMPLE) {
+            // Trailing whitespace as the parser's ignoreSurroundingSpaces drops it
+            while (end > start) {
+                if (whitespaceLength(end - 1) == 1) {
+                    end--;
+                } else if ((data[end - 1] & 0xFF) >= 0x80 && end - start >= 3 && whitespaceLength(end - 3) == 3) {
+                    end -= 3;
+                } else {
+                    break;
+                }
+            }
+        } else if (kinds[field] == QUOTED_WITH_ESCAPES) {
+            return new String(data, start, end - start, StandardCharsets.UTF_8).replace("\"\"", "\"").trim();
+        }
+        // Then String.trim(); chars up to ' ' are single bytes in UTF-8
+        while (start < end && (data[start] & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (data[end - 1] & 0xFF) <= ' ') {
+            end--;
+        }
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    private int scanSimple(int fieldStart, int valueStart) {
+        byte fieldFlags = 0;
+        int p = valueStart;
+        while (p < limit) {
+            byte kind = CLASSES[data[p] & 0xFF];
+            if (kind == ORDINARY) {
+                p++;
+            } else if (kind == FIELD_END) {
+                break;
+            } else if (kind == QUOTE) {
+                fieldFlags |= HAS_QUOTE;
+                p++;
+            } else {
+                int length = utf8Length(p);
+                if (length < 0) {
+                    fieldFlags |= INVALID_UTF8;
+                    p++;
+                } else {
+                    p += length;
+                }
+            }
+        }
+        add(fieldStart, p, valueStart, p, SIMPLE, fieldFlags);
+        return p;
+    }
+
+    private int scanQuoted(int fieldStart, int quote) throws IOException {
+        boolean escapes = false;
+        int p = quote + 1;
+        while (true) {
+            if (p >= limit) {
+                throw new IOException("EOF reached before encapsulated token finished");
+            }
+            if (data[p] == '"') {
+                if (p + 1 < limit && data[p + 1] == '"') {
+                    escapes = true;
+                    p += 2;
+                    continue;
+                }
+                break;
+            }
+            p++;
+        }
+        int valueEnd = p++;
+        // Only whitespace may follow the closing quote
+        while (p < limit && data[p] != ',' && !isLineBreak(data[p])) {
+            int whitespace = whitespaceLength(p);
+            if (whitespace == 0) {
+                throw new IOException("Invalid char between encapsulated token and delimiter");
+            }
+            p += whitespace;
+        }
+        add(fieldStart, p, quote + 1, valueEnd, escapes ? QUOTED_WITH_ESCAPES : QUOTED, (byte) 0);
+        return p;
+    }
+
+    private void add(int rawStart, int rawEnd, int valueStart, int valueEnd, byte kind, byte fieldFlags) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            rawStarts = Arrays.copyOf(rawStarts, capacity);
+            rawEnds = Arrays.copyOf(rawEnds, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueEnds = Arrays.copyOf(valueEnds, capacity);
+            kinds = Arrays.copyOf(kinds, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        rawStarts[size] = rawStart;
+        rawEnds[size] = rawEnd;
+        valueStarts[size] = valueStart;
+        valueEnds[size] = valueEnd;
+        kinds[size] = kind;
+        flags[size] = fieldFlags;
+        size++;
+    }
+
+    /**
+     * Bytes of the Character.isWhitespace char starting at p, or 0 if there is none
+     */
+    private int whitespaceLength(int p) {
+        int b = data[p] & 0xFF;
+        if (b < 0x80) {
+            return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F) ? 1 : 0;
+        }
+        if (p + 2 >= limit || (b != 0xE1 && b != 0xE2 && b != 0xE3)) {
+            return 0;
+        }
+        int second = data[p + 1] & 0xFF;
+        int third = data[p + 2] & 0xFF;
+        if (b == 0xE1) {
+            // U+1680
+            return second == 0x9A && third == 0x80 ? 3 : 0;
+        }
+        if (b == 0xE3) {
+            // U+3000
+            return second == 0x80 && third == 0x80 ? 3 : 0;
+        }
+        if (second == 0x80) {
+            // U+2000 to U+200A except the non-breaking U+2007, U+2028, U+2029
+            return (third >= 0x80 && third <= 0x8A && third != 0x87) || third == 0xA8 || third == 0xA9 ? 3 : 0;
+        }
+        // U+205F
+        return second == 0x81 && third == 0x9F ? 3 : 0;
+    }
+
+    /**
+     * Length of the well-formed UTF-8 sequence starting at p, or -1 where the decoder
+     * would substitute a replacement char
+     */
+    private int utf8Length(int p) {
+        int b = data[p] & 0xFF;
+        int length;
+        int secondMin = 0x80;
+        int secondMax = 0xBF;
+        if (b >= 0xC2 && b <= 0xDF) {
+            length = 2;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+            length = 3;
+            if (b == 0xE0) {
+                secondMin = 0xA0;
+            } else if (b == 0xED) {
+                secondMax = 0x9F;
+            }
+        } else if (b >= 0xF0 && b <= 0xF4) {
+            length = 4;
+            if (b == 0xF0) {
+                secondMin = 0x90;
+            } else if (b == 0xF4) {
+                secondMax = 0x8F;
+            }
+        } else {
+            return -1;
+        }
+        if (p + length > limit) {
+            return -1;
+        }
+        int second = data[p + 1] & 0xFF;
+        if (second < secondMin || second > secondMax) {
+            return -1;
+        }
+        for (int i = 2; i < length; i++) {
+            if ((data[p + i] & 0xC0) != 0x80) {
+                return -1;
+            }
+        }
+        return length;
+    }
+
+    private static boolean isLineBreak(byte b) {
+        return b == '\n' || b == '\r';
+    }
+}
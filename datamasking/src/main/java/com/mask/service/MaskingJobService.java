@@ -0,0 +1,223 @@
+package com.mask.service;
+
+import com.mask.model.FileStatus;
+import com.mask.model.UploadedFile;
+import com.mask.model.User;
+import com.mask.repository.UploadedFileRepository;
+import com.mask.util.MaskingRandom;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs masking jobs on a bounded worker pool so uploads never hold a request thread.
+ * When the queue is full new jobs are rejected instead of piling up.
+ */
+@Service
+public class MaskingJobService {
+
+    @Autowired
+    private MaskingService maskingService;
+
+    @Autowired
+    private UploadedFileRepository repository;
+
+    @Autowired
+    private UserService userService;
+
+    @Value("${app.masking.jobs.workers:2}")
+    private int workers;
+
+    @Value("${app.masking.jobs.queue-capacity:10}")
+    private int queueCapacity;
+
+    private final Map<Long, MaskingProgress> activeJobs = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "masking-job-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queue a file for masking.
+     * @throws RejectedExecutionException when the job queue is full
+     * @throws IllegalStateException when the file already has a queued or running job
+     */
+    public void submit(UploadedFile uploadedFile, Path storedFilePath, Map<String, String> columnTechniques,
+                       String globalTechnique, String maskedFileName, String userEmail) throws Exception {
+        Long fileId = uploadedFile.getId();
+        String originalFileName = uploadedFile.getOriginalFileName();
+        MaskingProgress progress = new MaskingProgress(Files.size(storedFilePath));
+
+        // One job per file, so two jobs never race on its status and masked file
+        if (activeJobs.putIfAbsent(fileId, progress) != null) {
+            throw new IllegalStateException("File " + fileId + " is already being processed");
+        }
+        try {
+            if (uploadedFile.getMaskingSeed() == null) {
+                uploadedFile.setMaskingSeed(MaskingRandom.newSeed());
+                repository.save(uploadedFile);
+            }
+            // Dates are generated relative to the upload day so reruns match
+            LocalDate anchorDate = uploadedFile.getUploadedAt() != null ? uploadedFile.getUploadedAt().toLocalDate() : null;
+            MaskingRandom random = MaskingRandom.seeded(uploadedFile.getMaskingSeed(), anchorDate);
+
+            executor.execute(() -> runJob(fileId, storedFilePath, originalFileName, columnTechniques,
+                globalTechnique, maskedFileName, userEmail, progress, random));
+        } catch (RuntimeException e) {
+            activeJobs.remove(fileId, progress);
+            throw e;
+        }
+    }
+
+    /**
+     * Whether a job for the file is queued or running
+     */
+    public boolean isActive(Long fileId) {
+        return activeJobs.containsKey(fileId);
+    }
+
+    /**
+     * Progress of a queued or running job
+     */
+    public Optional<MaskingProgress> getProgress(Long fileId) {
+        return Optional.ofNullable(activeJobs.get(fileId));
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    private void runJob(Long fileId, Path storedFilePath, String originalFileName,
+                        Map<String, String> columnTechniques, String globalTechnique,
+                        String maskedFileName, String userEmail, MaskingProgress progress,
+                        MaskingRandom random) {
+        progress.start();
+        try {
+            Path maskedFilePath = maskingService.maskFile(
+                storedFilePath,
+                originalFileName,
+                columnTechniques,
+                globalTechnique,
+                maskedFileName,
+                progress,
+                random
+            );
+
+            Optional<UploadedFile> fileOptional = repository.findById(fileId);
+            if (fileOptional.isEmpty()) {
+                // File was deleted while the job ran
+                Files.deleteIfExists(maskedFilePath);
+                return;
+            }
+
+            // Update database record with success status
+            UploadedFile uploadedFile = fileOptional.get();
+            uploadedFile.setMaskedFileName(maskedFilePath.getFileName().toString());
+            uploadedFile.setStatus(FileStatus.COMPLETED);
+            uploadedFile.setErrorMessage(null);
+            repository.save(uploadedFile);
+
+            System.out.println("Masking job " + fileId + " completed: " + progress.getRowsProcessed() + " rows, "
+                + progress.getCacheHits() + " cache hits, " + progress.getCacheMisses() + " cache misses");
+
+            // Send completion email notification
+            try {
+                sendCompletionNotification(uploadedFile, columnTechniques, globalTechnique, userEmail);
+            } catch (Exception emailError) {
+                System.err.println("Failed to send completion email: " + emailError.getMessage());
+                // Don't fail the whole process due to email issues
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+
+            // Update status to failed
+            repository.findById(fileId).ifPresent(uploadedFile -> {
+                uploadedFile.setStatus(FileStatus.FAILED);
+                uploadedFile.setErrorMessage(e.getMessage());
+                repository.save(uploadedFile);
+            });
+        } finally {
+            // Only this job's entry; a later job for the file keeps its own
+            activeJobs.remove(fileId, progress);
+        }
+    }
+
+    private void sendCompletionNotification(UploadedFile uploadedFile,
+                                          Map<String, String> columnTechniques,
+                                          String globalTechnique, String userEmail) {
+        try {
+            Optional<User> userOptional = userService.findByEmail(userEmail);
+
+            if (userOptional.isPresent()) {
+                User user = userOptional.get();
+
+                StringBuilder emailContent = new StringBuilder();
+                emailContent.append("Dear ").append(user.getName()).append(",\n\n");
+                emailContent.append("Your file masking process has been completed successfully.\n\n");
+                emailContent.append("File Details:\n");
+                emailContent.append("- Original File: ").append(uploadedFile.getOriginalFileName()).append("\n");
+                emailContent.append("- File Size: ").append(formatFileSize(uploadedFile.getSize())).append("\n");
+                emailContent.append("- Processing Time: ").append(new Date()).append("\n\n");
+
+                if (globalTechnique != null && !globalTechnique.trim().isEmpty()) {
+                    emailContent.append("Global Masking Technique: ").append(globalTechnique).append("\n\n");
+                }
+
+                if (!columnTechniques.isEmpty()) {
+                    emailContent.append("Column-Specific Masking:\n");
+                    columnTechniques.forEach((column, technique) ->
+                        emailContent.append("- ").append(column).append(": ").append(technique).append("\n"));
+                    emailContent.append("\n");
+                }
+
+                emailContent.append("Important Security Notes:\n");
+                emailContent.append("- The masking process is irreversible\n");
+                emailContent.append("- Original data cannot be recovered from masked data\n");
+                emailContent.append("- Please verify the masked data meets your requirements\n\n");
+                emailContent.append("You can download your masked file from the application dashboard.\n\n");
+                emailContent.append("Best regards,\n");
+                emailContent.append("DataMasking Team");
+
+                // This would need to be implemented in EmailService
+                // emailService.sendMaskingCompletionEmail(userEmail,
+                //     "File Masking Completed - " + uploadedFile.getOriginalFileName(),
+                //     emailContent.toString());
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            // Log error but don't fail the process
+        }
+    }
+
+    private String formatFileSize(long size) {
+        if (size < 1024) return size + " bytes";
+        if (size < 1024 * 1024) return String.format("%.1f KB", size / 1024.0);
+        return String.format("%.1f MB", size / (1024.0 * 1024.0));
+    }
+}
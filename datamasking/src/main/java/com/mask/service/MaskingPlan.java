@@ -0,0 +1,250 @@
+package com.mask.service;
+
+import com.mask.util.MaskBuffer;
+import com.mask.util.MaskingRandom;
+import com.mask.util.MaskingTechnique;
+import com.mask.util.MaskingTechnique.ValueWriter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Masking rules for one job, resolved once into ready-to-call maskers per column.
+ * Column techniques win over the global technique; columns with neither pass through.
+ */
+public class MaskingPlan {
+
+    /**
+     * Compiled masking function bound to a single column
+     */
+    @FunctionalInterface
+    public interface ColumnMasker {
+        String mask(String value);
+
+        /**
+         * Append the masked value to a buffer; see writesToBuffer for maskers that skip the String
+         */
+        default void maskTo(String value, MaskBuffer out) {
+            out.append(mask(value));
+        }
+    }
+
+    private static final ColumnMasker PASS_THROUGH = value -> value == null ? "" : value;
+
+    // Longer values (whole text lines, free text) are masked without caching
+    private static final int MAX_CACHED_VALUE_LENGTH = 256;
+
+    // Column maskers kept per job; JSON with generated keys would otherwise add one per key
+    static final int MAX_COMPILED_COLUMNS = 1024;
+
+    private final Map<String, String> columnTechniques;
+    private final String globalTechnique;
+    private final TechniqueRegistry techniques;
+    private final int valueCacheSize;
+    private final MaskingProgress stats;
+    private final TokenVault vault;
+    private final Map<String, ColumnMasker> maskersByColumn = new ConcurrentHashMap<>();
+
+    private MaskingPlan(Map<String, String> columnTechniques, String globalTechnique, TechniqueRegistry techniques,
+                        int valueCacheSize, MaskingProgress stats, TokenVault vault) {
+        this.columnTechniques = columnTechniques;
+        this.globalTechnique = globalTechnique;
+        this.techniques = techniques;
+        this.valueCacheSize = valueCacheSize;
+        this.stats = stats;
+        this.vault = vault;
+    }
+
+    /**
+     * Plan over the built-in techniques, without caching
+     */
+    public static MaskingPlan compile(Map<String, String> columnTechniques, String globalTechnique) {
+        return new MaskingPlan(columnTechniques, globalTechnique, TechniqueRegistry.builtIn(), 0, null, null);
+    }
+
+    /**
+     * Plan whose maskers remember up to valueCacheSize masked values per column (0 disables),
+     * counting hits and misses in the job's progress. Each distinct value is masked once, from
+     * a random source derived from the value, so repeats get the same output. With a vault,
+     * non-deterministic techniques take their surrogates from it so every file masked against
+     * it maps a value the same way.
+     */
+    public static MaskingPlan compile(Map<String, String> columnTechniques, String globalTechnique,
+                                      TechniqueRegistry techniques, int valueCacheSize, MaskingProgress stats,
+                                      TokenVault vault) {
+        return new MaskingPlan(columnTechniques, globalTechnique, techniques, stats != null ? valueCacheSize : 0,
+            stats, vault != null && vault.isEnabled() ? vault : null);
+    }
+
+    /**
+     * Resolve maskers for a header row, indexed by column position
+     */
+    public ColumnMasker[] bind(List<String> columnNames) {
+        ColumnMasker[] maskers = new ColumnMasker[columnNames.size()];
+        for (int i = 0; i < maskers.length; i++) {
+            maskers[i] = forColumn(columnNames.get(i));
+        }
+        return maskers;
+    }
+
+    /**
+     * Masker for a column looked up by name (compiled on first use). Past
+     * MAX_COMPILED_COLUMNS names, new names are compiled on every call and not cached.
+     */
+    public ColumnMasker forColumn(String columnName) {
+        if (columnName == null) {
+            return compileColumn(null, false);
+        }
+        ColumnMasker masker = maskersByColumn.get(columnName);
+        if (masker != null) {
+            return masker;
+        }
+        if (maskersByColumn.size() >= MAX_COMPILED_COLUMNS) {
+            return compileColumn(columnName, false);
+        }
+        return maskersByColumn.computeIfAbsent(columnName, name -> compileColumn(name, true));
+    }
+
+    /**
+     * Whether the masker leaves values untouched
+     */
+    public static boolean isPassThrough(ColumnMasker masker) {
+        return masker == PASS_THROUGH;
+    }
+
+    private ColumnMasker compileColumn(String columnName, boolean kept) {
+        String technique = columnTechniques != null && columnName != null ? columnTechniques.get(columnName) : null;
+        if (isBlank(technique)) {
+            technique = globalTechnique;
+        }
+        MaskingTechnique resolved = techniques.resolve(technique);
+        if (resolved == null) {
+            return PASS_THROUGH;
+        }
+
+        UnaryOperator<String> compiled = resolved.compile(columnName);
+        // Deterministic techniques already agree across files
+        boolean useVault = vault != null && !resolved.isDeterministic();
+        UnaryOperator<String> function = useVault ? vaulted(compiled, columnName) : compiled;
+        ColumnMasker masker = value -> {
+            if (value == null) {
+                return "";
+            }
+            if (isBlank(value)) {
+                return value;
+            }
+            try {
+                return function.apply(value);
+            } catch (Exception e) {
+                System.err.println("Error masking value for column '" + columnName + "': " + e.getMessage());
+                // Return original value on error instead of throwing exception
+                return value;
+            }
+        };
+        // A cache only pays off on a masker that is kept
+        if (kept && valueCacheSize > 0 && resolved.isCacheable()) {
+            return cached(masker, columnName, resolved.isDeterministic());
+        }
+        ValueWriter writer = resolved.isAllocationFree() && !useVault ? resolved.compileWriter(columnName) : null;
+        return writer != null ? new WritingMasker(masker, writer, columnName) : masker;
+    }
+
+    /**
+     * Whether maskTo writes straight into the buffer rather than going through a String
+     */
+    public static boolean writesToBuffer(ColumnMasker masker) {
+        return masker instanceof WritingMasker;
+    }
+
+    private UnaryOperator<String> vaulted(UnaryOperator<String> generator, String columnName) {
+        String domain = TokenVault.domainOf(columnName);
+        return value -> vault.tokenize(domain, value, generator);
+    }
+
+    private ColumnMasker cached(ColumnMasker masker, String columnName, boolean deterministic) {
+        ValueCache cache = new ValueCache(valueCacheSize);
+        long columnKey = MaskingRandom.columnKey(columnName);
+        return value -> {
+            if (value == null || isBlank(value) || value.length() > MAX_CACHED_VALUE_LENGTH) {
+                return masker.mask(value);
+            }
+
+            String masked = cache.get(value);
+            if (masked != null) {
+                stats.recordCacheHit();
+                return masked;
+            }
+
+            if (deterministic) {
+                masked = masker.mask(value);
+            } else {
+                MaskingRandom previousRandom = MaskingRandom.install(MaskingRandom.current().derive(columnKey, value));
+                try {
+                    masked = masker.mask(value);
+                } finally {
+                    MaskingRandom.install(previousRandom);
+                }
+            }
+            cache.put(value, masked);
+            stats.recordCacheMiss();
+            return masked;
+        };
+    }
+
+    /**
+     * Masker of an allocation-free technique, with the same null, blank and error handling
+     * as the String form
+     */
+    private static final class WritingMasker implements ColumnMasker {
+        private final ColumnMasker masker;
+        private final ValueWriter writer;
+        private final String columnName;
+
+        private WritingMasker(ColumnMasker masker, ValueWriter writer, String columnName) {
+            this.masker = masker;
+            this.writer = writer;
+            this.columnName = columnName;
+        }
+
+        @Override
+        public String mask(String value) {
+            return masker.mask(value);
+        }
+
+        @Override
+        public void maskTo(String value, MaskBuffer out) {
+            if (value == null) {
+                return;
+            }
+            if (isBlank(value)) {
+                out.append(value);
+                return;
+            }
+            int mark = out.length();
+            try {
+                writer.write(value, out);
+            } catch (Exception e) {
+                System.err.println("Error masking value for column '" + columnName + "': " + e.getMessage());
+                out.truncate(mark);
+                out.append(value);
+            }
+        }
+    }
+
+    /**
+     * Same whitespace rule as String.trim(), without allocating
+     */
+    static boolean isBlank(String value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
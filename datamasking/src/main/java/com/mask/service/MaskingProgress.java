@@ -0,0 +1,87 @@
+package com.mask.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters for one masking job, updated by the masking engines and read by
+ * the status endpoint.
+ */
+public class MaskingProgress {
+
+    private final long totalBytes;
+    private final AtomicLong rowsProcessed = new AtomicLong();
+    private final AtomicLong bytesProcessed = new AtomicLong();
+    // Counted per value by every worker, so kept in striped adders
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private volatile long startNanos;
+
+    public MaskingProgress(long totalBytes) {
+        this.totalBytes = totalBytes;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Reset the clock when the job actually starts running
+     */
+    public void start() {
+        startNanos = System.nanoTime();
+    }
+
+    public void addRows(long rows) {
+        rowsProcessed.addAndGet(rows);
+    }
+
+    public void addBytes(long bytes) {
+        bytesProcessed.addAndGet(bytes);
+    }
+
+    /**
+     * Record an absolute input position, for engines that only know their offset
+     */
+    public void setBytesProcessed(long bytes) {
+        bytesProcessed.set(bytes);
+    }
+
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    public long getRowsProcessed() {
+        return rowsProcessed.get();
+    }
+
+    public long getBytesProcessed() {
+        return bytesProcessed.get();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public long getBytesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+        return seconds > 0 ? (long) (bytesProcessed.get() / seconds) : 0;
+    }
+
+    /**
+     * Estimated seconds left, or null while no input position has been reported
+     */
+    public Long getEtaSeconds() {
+        long bytes = bytesProcessed.get();
+        long rate = getBytesPerSecond();
+        if (bytes <= 0 || rate <= 0 || totalBytes <= 0) {
+            return null;
+        }
+        return Math.max(0, totalBytes - bytes) / rate;
+    }
+}
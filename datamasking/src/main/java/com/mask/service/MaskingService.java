@@ -1,9 +1,14 @@
 package com.mask.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mask.service.MaskingPlan.ColumnMasker;
+import com.mask.util.MaskBuffer;
+import com.mask.util.MaskingRandom;
 import com.mask.util.MaskingUtils;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -12,6 +17,8 @@ import org.apache.commons.csv.CSVRecord;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
@@ -25,6 +32,61 @@ public class MaskingService {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Autowired
+    private ParallelCsvMasker parallelCsvMasker;
+
+    @Value("${app.masking.csv.parallel:true}")
+    private boolean parallelCsv;
+
+    @Autowired
+    private ParallelJsonLinesMasker parallelJsonLinesMasker;
+
+    @Autowired
+    private StreamingXlsxMasker streamingXlsxMasker;
+
+    @Autowired
+    private PackageXlsxMasker packageXlsxMasker;
+
+    @Autowired
+    private StreamingXlsMasker streamingXlsMasker;
+
+    @Autowired
+    private TokenVault tokenVault;
+
+    @Autowired
+    private TechniqueRegistry techniqueRegistry;
+
+    @Value("${app.masking.excel.streaming:true}")
+    private boolean streamingXlsx;
+
+    // Mask shared strings once and copy untouched parts; unmasked cells keep their types
+    @Value("${app.masking.excel.package-level:false}")
+    private boolean packageLevelXlsx;
+
+    @Value("${app.masking.excel.streaming-xls:true}")
+    private boolean streamingXls;
+
+    // Write numeric, date and boolean cells back typed, with their styles, where the masked text allows
+    @Value("${app.masking.excel.typed-cells:false}")
+    private boolean typedCells;
+
+    @Value("${app.masking.text.buffer-size:1048576}")
+    private int textBufferSize;
+
+    // Masked values remembered per column and job; off by default since cached random
+    // techniques draw from a per-value random source and so give different output
+    @Value("${app.masking.cache.values-per-column:0}")
+    private int valueCacheSize;
+
+    @Value("${app.masking.suggest.max-rows:10000}")
+    private long suggestMaxRows;
+
+    @Value("${app.masking.suggest.max-bytes:8388608}")
+    private long suggestMaxBytes;
+
+    @Value("${app.masking.suggest.samples-per-column:25}")
+    private int suggestSamplesPerColumn;
+
     public Map<String, String> autoSuggestTechniquesForCSV(Path csvPath) throws Exception {
         Map<String, String> suggestions = new LinkedHashMap<>();
         
@@ -46,7 +108,19 @@ public class MaskingService {
                     return suggestions;
                 }
                 
-                List<CSVRecord> records = parser.getRecords();
+                // Stream rows into per-column reservoirs, stopping at the row or size budget
+                // (the size budget is measured in characters read, close to bytes for typical exports)
+                ColumnSampler sampler = new ColumnSampler(headerMap.size(), suggestSamplesPerColumn);
+                long rowsRead = 0;
+                for (CSVRecord record : parser) {
+                    if (rowsRead >= suggestMaxRows || record.getCharacterPosition() >= suggestMaxBytes) {
+                        break;
+                    }
+                    rowsRead++;
+                    for (int i = 0; i < record.size(); i++) {
+                        sampler.offer(i, record.get(i));
+                    }
+                }
                 
                 for (String header : headerMap.keySet()) {
                     if (header == null || header.trim().isEmpty()) {
@@ -56,19 +130,23 @@ public class MaskingService {
                     String cleanHeader = header.trim();
                     boolean isSensitiveByName = MaskingUtils.headerIsSensitive(cleanHeader);
                     
+                    List<String> samples = sampler.samples(headerMap.get(header));
                     String sampleValue = "";
-                    for (CSVRecord record : records) {
-                        if (record.size() > headerMap.get(header)) {
-                            String value = record.get(header);
-                            if (value != null && !value.trim().isEmpty()) {
-                                sampleValue = value.trim();
-                                break;
-                            }
+                    Optional<String> typeByValue = Optional.empty();
+                    
+                    // Let the type most samples agree on decide, instead of a single value
+                    Map<Optional<String>, Integer> typeVotes = new HashMap<>();
+                    int bestVotes = 0;
+                    for (String sample : samples) {
+                        Optional<String> type = MaskingUtils.detectTypeByValue(sample);
+                        int votes = typeVotes.merge(type, 1, Integer::sum);
+                        if (votes > bestVotes) {
+                            bestVotes = votes;
+                            typeByValue = type;
+                            sampleValue = sample;
                         }
                     }
                     
-                    Optional<String> typeByValue = MaskingUtils.detectTypeByValue(sampleValue);
-                    
                     if (isSensitiveByName || typeByValue.isPresent()) {
                         String suggestedTechnique = determineBestTechnique(cleanHeader, sampleValue, typeByValue);
                         suggestions.put(cleanHeader, suggestedTechnique);
@@ -89,34 +167,61 @@ public class MaskingService {
     public Path maskFile(Path inputPath, String originalFileName, 
                         Map<String, String> columnTechniques, String globalTechnique, 
                         String maskedFileName) throws Exception {
+        return maskFile(inputPath, originalFileName, columnTechniques, globalTechnique, maskedFileName,
+            new MaskingProgress(Files.size(inputPath)), MaskingRandom.unseeded());
+    }
+
+    /**
+     * Main file masking dispatcher, reporting rows and input bytes to the given progress.
+     * Random techniques draw from the given source, so a seeded source gives reproducible output.
+     */
+    public Path maskFile(Path inputPath, String originalFileName, 
+                        Map<String, String> columnTechniques, String globalTechnique, 
+                        String maskedFileName, MaskingProgress progress, MaskingRandom random) throws Exception {
         
         String extension = getFileExtension(originalFileName).toLowerCase();
+        MaskingPlan plan = MaskingPlan.compile(columnTechniques, globalTechnique, techniqueRegistry,
+            valueCacheSize, progress, tokenVault);
         
-        switch (extension) {
-            case "csv":
-                return maskCsvFile(inputPath, columnTechniques, globalTechnique, maskedFileName);
-            case "txt":
-                return maskTextFile(inputPath, globalTechnique, maskedFileName);
-            case "xlsx":
-                return maskExcelFile(inputPath, columnTechniques, globalTechnique, maskedFileName, true);
-            case "xls":
-                return maskExcelFile(inputPath, columnTechniques, globalTechnique, maskedFileName, false);
-            case "json":
-                return maskJsonFile(inputPath, columnTechniques, globalTechnique, maskedFileName);
-            default:
-                throw new IllegalArgumentException("Unsupported file type: " + extension);
+        MaskingRandom previousRandom = MaskingRandom.install(random);
+        try {
+            switch (extension) {
+                case "csv":
+                    return maskCsvFile(inputPath, plan, maskedFileName, progress);
+                case "txt":
+                    return maskTextFile(inputPath, globalTechnique, maskedFileName, progress);
+                case "xlsx":
+                    return maskExcelFile(inputPath, plan, maskedFileName, true, progress);
+                case "xls":
+                    return maskExcelFile(inputPath, plan, maskedFileName, false, progress);
+                case "json":
+                    return maskJsonFile(inputPath, plan, maskedFileName, progress);
+                case "jsonl":
+                case "ndjson":
+                    return maskJsonLinesFile(inputPath, plan, maskedFileName, progress);
+                default:
+                    throw new IllegalArgumentException("Unsupported file type: " + extension);
+            }
+        } finally {
+            MaskingRandom.install(previousRandom);
         }
     }
 
     /**
      * Enhanced CSV masking with precise column selection
      */
-		private Path maskCsvFile(Path inputPath, Map<String, String> columnTechniques, 
-		            String globalTechnique, String maskedFileName) throws Exception {
+		private Path maskCsvFile(Path inputPath, MaskingPlan plan, String maskedFileName,
+		            MaskingProgress progress) throws Exception {
 		
 		Path outputPath = inputPath.getParent().resolve(maskedFileName);
 		
-		try (BufferedReader reader = Files.newBufferedReader(inputPath, StandardCharsets.UTF_8)) {
+		if (parallelCsv) {
+		parallelCsvMasker.mask(inputPath, outputPath, plan, progress);
+		return outputPath;
+		}
+		
+		CountingInputStream input = new CountingInputStream(Files.newInputStream(inputPath));
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
 		CSVFormat inputFormat = CSVFormat.DEFAULT
 		.withFirstRecordAsHeader()
 		.withIgnoreHeaderCase()
@@ -134,6 +239,11 @@ public class MaskingService {
 		}
 		
 		List<String> headers = new ArrayList<>(headerMap.keySet());
+		ColumnMasker[] maskers = plan.bind(headers);
+		int[] sourceIndexes = new int[headers.size()];
+		for (int i = 0; i < sourceIndexes.length; i++) {
+		    sourceIndexes[i] = headerMap.get(headers.get(i));
+		}
 		
 		// Print headers unchanged
 		printer.printRecord(headers);
@@ -142,26 +252,16 @@ public class MaskingService {
 		int recordCount = 0;
 		for (CSVRecord record : parser) {
 		    recordCount++;
-		    List<String> maskedRecord = new ArrayList<>();
 		    
-		    for (String header : headers) {
-		        String originalValue = "";
-		        
-		        // Safely get value from record
-		        try {
-		            if (record.isMapped(header) && record.get(header) != null) {
-		                originalValue = record.get(header);
-		            }
-		        } catch (Exception e) {
-		            System.err.println("Error reading value for header '" + header + "' in record " + recordCount + ": " + e.getMessage());
-		            originalValue = "";
-		        }
-		        
-		        String maskedValue = maskValue(originalValue, header, columnTechniques, globalTechnique);
-		        maskedRecord.add(maskedValue);
+		    // Positional access; short records leave the missing columns empty
+		    for (int i = 0; i < maskers.length; i++) {
+		        String originalValue = sourceIndexes[i] < record.size() ? record.get(sourceIndexes[i]) : "";
+		        printer.print(maskers[i].mask(originalValue));
 		    }
 		    
-		    printer.printRecord(maskedRecord);
+		    printer.println();
+		    progress.addRows(1);
+		    progress.setBytesProcessed(input.getCount());
 		}
 		
 		System.out.println("Successfully processed " + recordCount + " records");
@@ -172,44 +272,84 @@ public class MaskingService {
 		}
 
     /**
-     * Text file masking (treats entire content as single column)
+     * Text file masking (treats entire content as single column), streamed line by line
      */
-    private Path maskTextFile(Path inputPath, String globalTechnique, String maskedFileName) throws Exception {
+    private Path maskTextFile(Path inputPath, String globalTechnique, String maskedFileName,
+                              MaskingProgress progress) throws Exception {
         Path outputPath = inputPath.getParent().resolve(maskedFileName);
         
-        List<String> lines = Files.readAllLines(inputPath, StandardCharsets.UTF_8);
-        List<String> maskedLines = new ArrayList<>();
-        
         String technique = globalTechnique != null ? globalTechnique : "FULL_MASK";
+        ColumnMasker masker = MaskingPlan.compile(null, technique, techniqueRegistry, valueCacheSize, progress, null)
+            .forColumn(null);
         
-        for (String line : lines) {
-            String maskedLine = MaskingUtils.applyTechnique(technique, line, null);
-            maskedLines.add(maskedLine);
+        boolean buffered = MaskingPlan.writesToBuffer(masker);
+        MaskBuffer maskedLine = new MaskBuffer();
+        long startNanos = System.nanoTime();
+        long lineCount = 0;
+        CountingInputStream input = new CountingInputStream(Files.newInputStream(inputPath));
+        try (BufferedReader reader = new BufferedReader(
+                 new InputStreamReader(input, StandardCharsets.UTF_8), textBufferSize);
+             BufferedWriter writer = new BufferedWriter(
+                 new OutputStreamWriter(Files.newOutputStream(outputPath), StandardCharsets.UTF_8), textBufferSize)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (buffered) {
+                    masker.maskTo(line, maskedLine.reset());
+                    maskedLine.writeTo(writer);
+                } else {
+                    writer.write(masker.mask(line));
+                }
+                writer.newLine();
+                lineCount++;
+                progress.addRows(1);
+                progress.setBytesProcessed(input.getCount());
+            }
         }
         
-        Files.write(outputPath, maskedLines, StandardCharsets.UTF_8);
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        double megabytes = Files.size(inputPath) / (1024.0 * 1024.0);
+        System.out.println(String.format("Masked %d lines (%.1f MB) in %d ms: %.1f MB/s",
+            lineCount, megabytes, elapsedMillis, megabytes * 1000 / elapsedMillis));
         return outputPath;
     }
 
     /**
      * Enhanced Excel masking with precise column handling
      */
-    private Path maskExcelFile(Path inputPath, Map<String, String> columnTechniques, 
-                              String globalTechnique, String maskedFileName, boolean isXlsx) throws Exception {
+    private Path maskExcelFile(Path inputPath, MaskingPlan plan, String maskedFileName, boolean isXlsx,
+                              MaskingProgress progress) throws Exception {
         
         Path outputPath = inputPath.getParent().resolve(maskedFileName);
         
+        if (isXlsx && packageLevelXlsx) {
+            packageXlsxMasker.mask(inputPath, outputPath, plan, progress);
+            return outputPath;
+        }
+        
+        if (isXlsx && streamingXlsx) {
+            streamingXlsxMasker.mask(inputPath, outputPath, plan, progress);
+            return outputPath;
+        }
+        
+        if (!isXlsx && streamingXls) {
+            streamingXlsMasker.mask(inputPath, outputPath, plan, progress);
+            return outputPath;
+        }
+        
         try (InputStream inputStream = Files.newInputStream(inputPath);
              Workbook workbook = WorkbookFactory.create(inputStream);
              OutputStream outputStream = Files.newOutputStream(outputPath)) {
             
             Workbook outputWorkbook = isXlsx ? new XSSFWorkbook() : new HSSFWorkbook();
+            // Output style per input style index, cloned on first use
+            Map<Short, CellStyle> styleCache = new HashMap<>();
             
             for (int sheetIndex = 0; sheetIndex < workbook.getNumberOfSheets(); sheetIndex++) {
                 Sheet inputSheet = workbook.getSheetAt(sheetIndex);
                 Sheet outputSheet = outputWorkbook.createSheet(inputSheet.getSheetName());
                 
                 List<String> headers = new ArrayList<>();
+                ColumnMasker[] maskers = new ColumnMasker[0];
                 boolean isFirstRow = true;
                 
                 for (Row inputRow : inputSheet) {
@@ -224,6 +364,7 @@ public class MaskingService {
                             Cell outputCell = outputRow.createCell(inputCell.getColumnIndex());
                             outputCell.setCellValue(headerValue);
                         }
+                        maskers = plan.bind(headers);
                         isFirstRow = false;
                     } else {
                         // Process data rows
@@ -231,12 +372,17 @@ public class MaskingService {
                             int columnIndex = inputCell.getColumnIndex();
                             String originalValue = getCellValueAsString(inputCell);
                             
-                            String columnName = columnIndex < headers.size() ? headers.get(columnIndex) : "Column" + columnIndex;
-                            String maskedValue = maskValue(originalValue, columnName, columnTechniques, globalTechnique);
+                            ColumnMasker masker = columnIndex < maskers.length
+                                ? maskers[columnIndex] : plan.forColumn("Column" + columnIndex);
+                            String maskedValue = masker.mask(originalValue);
                             
                             Cell outputCell = outputRow.createCell(columnIndex);
-                            outputCell.setCellValue(maskedValue);
+                            if (!typedCells || !writeTypedCell(inputCell, outputCell, originalValue, maskedValue,
+                                    styleCache)) {
+                                outputCell.setCellValue(maskedValue);
+                            }
                         }
+                        progress.addRows(1);
                     }
                 }
             }
@@ -249,101 +395,119 @@ public class MaskingService {
     }
 
     /**
-     * Enhanced JSON masking with selective field processing
+     * Keep a numeric, date or boolean cell's type and style when the masked text still reads as one
      */
-    private Path maskJsonFile(Path inputPath, Map<String, String> columnTechniques, 
-                             String globalTechnique, String maskedFileName) throws Exception {
+    private boolean writeTypedCell(Cell inputCell, Cell outputCell, String originalValue, String maskedValue,
+                                   Map<Short, CellStyle> styleCache) {
+        boolean numericFormula = inputCell.getCellType() == CellType.FORMULA
+            && inputCell.getCachedFormulaResultType() == CellType.NUMERIC;
+        if (inputCell.getCellType() == CellType.NUMERIC || numericFormula) {
+            boolean date = inputCell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(inputCell);
+            // Read dates through the cell so 1904 windowing is applied
+            double original = date
+                ? DateUtil.getExcelDate(inputCell.getLocalDateTimeCellValue()) : inputCell.getNumericCellValue();
+            Double number = TypedCells.number(original, date, false, originalValue, maskedValue);
+            if (number == null) {
+                return false;
+            }
+            outputCell.setCellValue(number);
+        } else if (inputCell.getCellType() == CellType.BOOLEAN) {
+            Boolean bool = TypedCells.bool(maskedValue);
+            if (bool == null) {
+                return false;
+            }
+            outputCell.setCellValue(bool);
+        } else {
+            return false;
+        }
         
-        Path outputPath = inputPath.getParent().resolve(maskedFileName);
+        CellStyle inputStyle = inputCell.getCellStyle();
+        outputCell.setCellStyle(styleCache.computeIfAbsent(inputStyle.getIndex(), index -> {
+            CellStyle style = outputCell.getSheet().getWorkbook().createCellStyle();
+            style.cloneStyleFrom(inputStyle);
+            return style;
+        }));
+        return true;
+    }
+
+    /**
+     * Streaming JSON masking - tokens are copied straight to the output and scalar
+     * object fields are masked as they pass, so no tree is built
+     */
+    private Path maskJsonFile(Path inputPath, MaskingPlan plan, String maskedFileName,
+                              MaskingProgress progress) throws Exception {
         
-        JsonNode rootNode = objectMapper.readTree(Files.newBufferedReader(inputPath, StandardCharsets.UTF_8));
-        JsonNode maskedNode = maskJsonNode(rootNode, columnTechniques, globalTechnique, "");
+        Path outputPath = inputPath.getParent().resolve(maskedFileName);
+        JsonFactory jsonFactory = objectMapper.getFactory();
         
-        try (BufferedWriter writer = Files.newBufferedWriter(outputPath, StandardCharsets.UTF_8)) {
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(writer, maskedNode);
+        try (JsonParser parser = jsonFactory.createParser(Files.newInputStream(inputPath));
+             JsonGenerator generator = jsonFactory.createGenerator(Files.newOutputStream(outputPath), JsonEncoding.UTF8)) {
+            generator.useDefaultPrettyPrinter();
+            maskJsonValue(parser, generator, plan, progress);
         }
         
         return outputPath;
     }
 
     /**
-     * Recursive JSON node masking
+     * JSON Lines masking - every line is one record, masked in parallel chunks
+     */
+    private Path maskJsonLinesFile(Path inputPath, MaskingPlan plan, String maskedFileName,
+                                   MaskingProgress progress) throws Exception {
+        
+        Path outputPath = inputPath.getParent().resolve(maskedFileName);
+        parallelJsonLinesMasker.mask(inputPath, outputPath, plan, progress);
+        return outputPath;
+    }
+
+    /**
+     * Copy the next JSON value token by token; the parser context is the field-name stack
      */
-    private JsonNode maskJsonNode(JsonNode node, Map<String, String> columnTechniques, 
-                                 String globalTechnique, String parentKey) {
+    private void maskJsonValue(JsonParser parser, JsonGenerator generator, MaskingPlan plan,
+                               MaskingProgress progress) throws IOException {
+        JsonToken token = parser.nextToken();
+        int depth = 0;
         
-        if (node.isArray()) {
-            ArrayNode arrayNode = objectMapper.createArrayNode();
-            for (JsonNode element : node) {
-                arrayNode.add(maskJsonNode(element, columnTechniques, globalTechnique, parentKey));
+        while (token != null) {
+            if (token.isScalarValue() && parser.getParsingContext().inObject()) {
+                String originalValue = scalarText(parser, token);
+                generator.writeString(plan.forColumn(parser.getCurrentName()).mask(originalValue));
+            } else {
+                generator.copyCurrentEvent(parser);
             }
-            return arrayNode;
-        } else if (node.isObject()) {
-            ObjectNode objectNode = objectMapper.createObjectNode();
-            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
             
-            while (fields.hasNext()) {
-                Map.Entry<String, JsonNode> field = fields.next();
-                String fieldName = field.getKey();
-                JsonNode fieldValue = field.getValue();
-                
-                if (fieldValue.isValueNode()) {
-                    String originalValue = fieldValue.asText();
-                    String maskedValue = maskValue(originalValue, fieldName, columnTechniques, globalTechnique);
-                    objectNode.put(fieldName, maskedValue);
-                } else {
-                    objectNode.set(fieldName, maskJsonNode(fieldValue, columnTechniques, globalTechnique, fieldName));
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+                // Objects directly under the root are the records of an export
+                if (depth == 1) {
+                    progress.addRows(1);
+                    progress.setBytesProcessed(parser.getCurrentLocation().getByteOffset());
                 }
             }
-            return objectNode;
+            if (depth == 0) {
+                return;
+            }
+            token = parser.nextToken();
         }
-        
-        return node;
     }
 
     /**
-     * Core value masking logic - only masks if column is specified or global is set
+     * Text of a scalar token, rendered the same way JsonNode.asText() renders it
      */
-		    private String maskValue(String originalValue, String columnName, 
-		            Map<String, String> columnTechniques, String globalTechnique) {
-		
-		// Handle null or empty values
-		if (originalValue == null) {
-		return "";
-		}
-		
-		if (originalValue.trim().isEmpty()) {
-		return originalValue;
-		}
-		
-		try {
-		// Check if this specific column should be masked
-		if (columnTechniques != null && columnTechniques.containsKey(columnName)) {
-		String technique = columnTechniques.get(columnName);
-		if (technique != null && !technique.trim().isEmpty()) {
-		    return MaskingUtils.applyTechnique(technique, originalValue, columnName);
-		}
-		}
-		
-		// Apply global technique only if no specific column technique is set
-		if (globalTechnique != null && !globalTechnique.trim().isEmpty()) {
-		// Only apply global if this column wasn't specifically excluded
-		if (columnTechniques == null || !columnTechniques.containsKey(columnName) || 
-		    columnTechniques.get(columnName) == null || columnTechniques.get(columnName).trim().isEmpty()) {
-		    return MaskingUtils.applyTechnique(globalTechnique, originalValue, columnName);
-		}
-		}
-		
-		// Return original value if no masking rules apply
-		return originalValue;
-		
-		} catch (Exception e) {
-		System.err.println("Error masking value for column '" + columnName + "': " + e.getMessage());
-		// Return original value on error instead of throwing exception
-		return originalValue;
-		}
-		}
-
+    static String scalarText(JsonParser parser, JsonToken token) throws IOException {
+        switch (token) {
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue().toString();
+            case VALUE_NUMBER_FLOAT:
+                return String.valueOf(parser.getDoubleValue());
+            case VALUE_NULL:
+                return "null";
+            default:
+                return parser.getText();
+        }
+    }
 
     /**
      * Determine the best masking technique based on column name and sample value
@@ -444,4 +608,46 @@ public class MaskingService {
                 return "";
         }
     }
+
+    /**
+     * Counts the encoded bytes the reader above it has consumed. The reader buffers ahead,
+     * so the count leads the current line by at most one buffer and ends at the file size.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,697 @@
+package com.mask.service;
+
+import com.mask.service.MaskingPlan.ColumnMasker;
+import com.mask.service.StreamingXlsxMasker.CellState;
+import com.mask.service.StreamingXlsxMasker.CellTextFormatter;
+import com.mask.service.StreamingXlsxMasker.TypeTrackingHandler;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackagePartName;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.springframework.stereotype.Service;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * XLSX masking at the zip package level. Every distinct shared string is masked once and
+ * the shared strings part is rewritten; a sheet is only rewritten when a masked column
+ * holds cells the shared strings can't cover, and all other parts are copied as their
+ * compressed bytes.
+ * <p>
+ * A shared string is masked in place only when every cell using it is in columns with
+ * the same masker. Cells whose string is also used by a header, an unmasked column or a
+ * column with another technique, and masked cells that are numbers, inline text or
+ * formulas, become inline strings in the rewritten sheet. Unlike the other Excel paths,
+ * cells that are not masked keep their type and style.
+ * <p>
+ * Masked shared strings (all asterisks, say) compress far better than the originals;
+ * POI-based readers of the output may need ZipSecureFile.setMinInflateRatio lowered.
+ */
+@Service
+public class PackageXlsxMasker {
+
+    // Owner of a shared string that more than one masker uses
+    private static final ColumnMasker MIXED = value -> value;
+
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+    private static final int FLUSH_CHARS = 1 << 16;
+
+    /**
+     * Mask an XLSX workbook into a new package
+     */
+    public void mask(Path inputPath, Path outputPath, MaskingPlan plan, MaskingProgress progress) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(inputPath.toFile(), PackageAccess.READ);
+             ZipFile zip = new ZipFile(inputPath.toFile())) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            boolean date1904 = StreamingXlsxMasker.isDate1904(reader);
+            SharedStringOwners owners = new SharedStringOwners();
+
+            // First pass: which maskers use each shared string and which sheets have cells it can't cover
+            Map<String, SheetScan> scans = new LinkedHashMap<>();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheetStream = sheets.next()) {
+                    SheetScan scan = new SheetScan();
+                    parse(sheetStream, new SheetHandler(styles, sharedStrings, date1904, plan, owners, scan, null));
+                    scans.put(entryName(sheets.getSheetPart().getPartName()), scan);
+                }
+            }
+
+            String[] maskedStrings = owners.maskSharedStrings(sharedStrings);
+            BitSet notInPlace = owners.notMaskedInPlace();
+            boolean maskedFormulas = false;
+            int rewrittenSheets = 0;
+            for (SheetScan scan : scans.values()) {
+                scan.rewrite = scan.inlineCells || scan.sharedInMaskedColumns.intersects(notInPlace);
+                maskedFormulas |= scan.maskedFormulas;
+                rewrittenSheets += scan.rewrite ? 1 : 0;
+            }
+
+            String sharedStringsEntry = partEntry(pkg, XSSFRelation.SHARED_STRINGS.getContentType());
+            // Formulas replaced by masked text would be listed in the calculation chain; Excel rebuilds it
+            String calcChainEntry = maskedFormulas ? partEntry(pkg, XSSFRelation.CALC_CHAIN.getContentType()) : null;
+            String workbookRelsEntry = calcChainEntry != null ? workbookRelsEntry(pkg) : null;
+
+            try (ZipArchiveOutputStream output = new ZipArchiveOutputStream(outputPath.toFile())) {
+                for (ZipArchiveEntry entry : Collections.list(zip.getEntriesInPhysicalOrder())) {
+                    String name = entry.getName();
+                    SheetScan scan = scans.get(name);
+
+                    if (name.equals(sharedStringsEntry) && maskedStrings != null) {
+                        try (InputStream part = zip.getInputStream(entry)) {
+                            Writer writer = startEntry(output, name);
+                            parse(part, new SharedStringsRewriter(new XmlCopier(writer), maskedStrings));
+                            finishEntry(output, writer);
+                        }
+                    } else if (scan != null && scan.rewrite) {
+                        try (InputStream part = zip.getInputStream(entry)) {
+                            Writer writer = startEntry(output, name);
+                            parse(part, new SheetHandler(styles, sharedStrings, date1904, plan, owners, scan,
+                                new XmlCopier(writer)));
+                            finishEntry(output, writer);
+                        }
+                    } else if (name.equals(calcChainEntry)) {
+                        continue;
+                    } else if (calcChainEntry != null && (name.equals(CONTENT_TYPES) || name.equals(workbookRelsEntry))) {
+                        String xml;
+                        try (InputStream part = zip.getInputStream(entry)) {
+                            xml = new String(part.readAllBytes(), StandardCharsets.UTF_8);
+                        }
+                        String calcChainFile = calcChainEntry.substring(calcChainEntry.lastIndexOf('/') + 1);
+                        xml = xml.replaceAll("<Override[^>]*PartName=\"/" + Pattern.quote(calcChainEntry) + "\"[^>]*/>", "")
+                            .replaceAll("<Relationship[^>]*Target=\"[^\"]*" + Pattern.quote(calcChainFile) + "\"[^>]*/>", "");
+                        Writer writer = startEntry(output, name);
+                        writer.write(xml);
+                        finishEntry(output, writer);
+                    } else {
+                        output.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+                    }
+
+                    if (scan != null) {
+                        progress.addRows(scan.dataRows);
+                    }
+                }
+            }
+
+            System.out.println(String.format("Masked %d shared strings; rewrote %d of %d sheets",
+                owners.maskedCount(), rewrittenSheets, scans.size()));
+        }
+    }
+
+    private static void parse(InputStream input, DefaultHandler handler) throws Exception {
+        XMLReader xmlReader = XMLHelper.newXMLReader();
+        xmlReader.setContentHandler(handler);
+        xmlReader.parse(new InputSource(input));
+    }
+
+    private static Writer startEntry(ZipArchiveOutputStream output, String name) throws IOException {
+        output.putArchiveEntry(new ZipArchiveEntry(name));
+        // Only flushed per entry; closing it would close the zip
+        return new OutputStreamWriter(output, StandardCharsets.UTF_8);
+    }
+
+    private static void finishEntry(ZipArchiveOutputStream output, Writer writer) throws IOException {
+        writer.flush();
+        output.closeArchiveEntry();
+    }
+
+    private static String entryName(PackagePartName partName) {
+        return partName.getName().substring(1);
+    }
+
+    private static String partEntry(OPCPackage pkg, String contentType) {
+        List<PackagePart> parts = pkg.getPartsByContentType(contentType);
+        return parts.isEmpty() ? null : entryName(parts.get(0).getPartName());
+    }
+
+    private static String workbookRelsEntry(OPCPackage pkg) throws Exception {
+        PackagePart workbook = pkg.getPartsByRelationshipType(PackageRelationshipTypes.CORE_DOCUMENT).get(0);
+        return entryName(PackagingURIHelper.getRelationshipPartName(workbook.getPartName()));
+    }
+
+    /**
+     * What the first pass learned about one sheet
+     */
+    private static final class SheetScan {
+        final BitSet sharedInMaskedColumns = new BitSet();
+        boolean inlineCells;
+        boolean maskedFormulas;
+        boolean rewrite;
+        long dataRows;
+    }
+
+    /**
+     * How each shared string is used, by shared string index: the masker of the masked
+     * cells using it (MIXED for several) and whether any cell shows it unmasked
+     */
+    private static final class SharedStringOwners {
+        private ColumnMasker[] owners = new ColumnMasker[1024];
+        private final BitSet unmasked = new BitSet();
+        private int maskedCount;
+
+        void claim(int index, ColumnMasker masker) {
+            if (index >= owners.length) {
+                owners = Arrays.copyOf(owners, Math.max(index + 1, owners.length * 2));
+            }
+            ColumnMasker owner = owners[index];
+            owners[index] = owner == null || owner == masker ? masker : MIXED;
+        }
+
+        void keep(int index) {
+            unmasked.set(index);
+        }
+
+        boolean isMaskedBy(int index, ColumnMasker masker) {
+            return index < owners.length && owners[index] == masker && !unmasked.get(index);
+        }
+
+        /**
+         * Strings used by masked cells that can't be masked in the shared strings part
+         */
+        BitSet notMaskedInPlace() {
+            BitSet result = new BitSet();
+            for (int i = 0; i < owners.length; i++) {
+                if (owners[i] != null && (owners[i] == MIXED || unmasked.get(i))) {
+                    result.set(i);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Replacement text by index for strings no cell shows unmasked, or null when there are none.
+         * Strings of several maskers are emptied: their cells all become inline strings.
+         */
+        String[] maskSharedStrings(ReadOnlySharedStringsTable sharedStrings) {
+            String[] masked = null;
+            for (int i = 0; i < owners.length; i++) {
+                ColumnMasker owner = owners[i];
+                if (owner == null || unmasked.get(i)) {
+                    continue;
+                }
+                if (masked == null) {
+                    masked = new String[owners.length];
+                }
+                if (owner == MIXED) {
+                    masked[i] = "";
+                } else {
+                    masked[i] = owner.mask(sharedStrings.getItemAt(i).getString());
+                    maskedCount++;
+                }
+            }
+            return masked;
+        }
+
+        int maskedCount() {
+            return maskedCount;
+        }
+    }
+
+    /**
+     * Reads cells the way the streaming path does. In the first pass it records shared
+     * string use; with a copier it writes the sheet back, replacing the masked cells the
+     * shared strings part doesn't cover with inline strings.
+     */
+    private static final class SheetHandler extends DefaultHandler implements SheetContentsHandler {
+
+        private final MaskingPlan plan;
+        private final SharedStringOwners owners;
+        private final SheetScan scan;
+        private final XmlCopier copier;
+        private final CellState cellState = new CellState();
+        private final TypeTrackingHandler cells;
+        private final List<String> headers = new ArrayList<>();
+        private ColumnMasker[] maskers;
+        private int lastColumn;
+
+        // Cell being read
+        private final StringBuilder rawValue = new StringBuilder();
+        private boolean inValue;
+        private String cellQName;
+        private String reference;
+        private String style;
+        private String type;
+        private int column;
+        private String text;
+        // Cell of an unmasked column: only its shared string index matters, so it isn't formatted
+        private boolean skipping;
+
+        private SheetHandler(StylesTable styles, ReadOnlySharedStringsTable sharedStrings, boolean date1904,
+                             MaskingPlan plan, SharedStringOwners owners, SheetScan scan, XmlCopier copier) {
+            this.plan = plan;
+            this.owners = owners;
+            this.scan = scan;
+            this.copier = copier;
+            this.cells = new TypeTrackingHandler(styles, sharedStrings, this,
+                new CellTextFormatter(cellState, date1904), cellState);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            if (copier != null) {
+                copier.startDocument();
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            if (copier != null) {
+                copier.endDocument();
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            if (copier != null) {
+                copier.startPrefixMapping(prefix, uri);
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("c".equals(localName)) {
+                cellQName = qName;
+                reference = attributes.getValue("r");
+                style = attributes.getValue("s");
+                type = attributes.getValue("t");
+                text = null;
+                rawValue.setLength(0);
+                if (maskers != null && reference != null) {
+                    column = StreamingXlsxMasker.columnIndexOf(reference);
+                    skipping = MaskingPlan.isPassThrough(maskerFor(column));
+                    if (skipping) {
+                        lastColumn = column;
+                    }
+                }
+                if (copier != null) {
+                    copier.hold();
+                }
+            } else if ("v".equals(localName) && cellQName != null) {
+                inValue = true;
+            }
+            if (copier != null) {
+                copier.startElement(uri, localName, qName, attributes);
+            }
+            if (!skipping) {
+                cells.startElement(uri, localName, qName, attributes);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (!skipping) {
+                cells.endElement(uri, localName, qName);
+            }
+            if ("v".equals(localName)) {
+                inValue = false;
+            }
+            if (!"c".equals(localName)) {
+                if (copier != null) {
+                    copier.endElement(uri, localName, qName);
+                }
+                return;
+            }
+
+            int shared = "s".equals(type) ? sharedIndex() : -1;
+            ColumnMasker masker = maskers != null && text != null ? maskerFor(column) : null;
+            boolean masked = masker != null && !MaskingPlan.isPassThrough(masker) && !MaskingPlan.isBlank(text);
+
+            if (copier == null) {
+                if (!masked) {
+                    if (shared >= 0) {
+                        owners.keep(shared);
+                    }
+                } else if (shared >= 0) {
+                    owners.claim(shared, masker);
+                    scan.sharedInMaskedColumns.set(shared);
+                } else {
+                    scan.inlineCells = true;
+                    scan.maskedFormulas |= cellState.formula;
+                }
+            } else if (masked && (shared < 0 || !owners.isMaskedBy(shared, masker))) {
+                copier.release(false);
+                copier.writeInlineCell(cellQName, reference, style, masker.mask(text));
+            } else {
+                copier.endElement(uri, localName, qName);
+                copier.release(true);
+            }
+            cellQName = null;
+            skipping = false;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (inValue) {
+                rawValue.append(ch, start, length);
+            }
+            if (copier != null) {
+                copier.characters(ch, start, length);
+            }
+            if (!skipping) {
+                cells.characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            lastColumn = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (maskers == null) {
+                maskers = plan.bind(headers);
+            } else if (copier == null) {
+                scan.dataRows++;
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            column = cellReference != null ? StreamingXlsxMasker.columnIndexOf(cellReference) : lastColumn + 1;
+            lastColumn = column;
+            text = cellState.textFor(formattedValue);
+            if (maskers == null) {
+                while (headers.size() < column) {
+                    headers.add("Column" + headers.size());
+                }
+                headers.add(text);
+            }
+        }
+
+        private ColumnMasker maskerFor(int columnIndex) {
+            return columnIndex < maskers.length ? maskers[columnIndex] : plan.forColumn("Column" + columnIndex);
+        }
+
+        private int sharedIndex() {
+            if (rawValue.length() == 0) {
+                return -1;
+            }
+            try {
+                return Integer.parseInt(rawValue.toString().trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Copies the shared strings part, replacing the entries masked in place
+     */
+    private static final class SharedStringsRewriter extends DefaultHandler {
+
+        private final XmlCopier copier;
+        private final String[] masked;
+        private int index = -1;
+        // Depth inside a replaced entry, 0 when copying
+        private int skipDepth;
+
+        private SharedStringsRewriter(XmlCopier copier, String[] masked) {
+            this.copier = copier;
+            this.masked = masked;
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            copier.startDocument();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            copier.endDocument();
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) {
+            copier.startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if (skipDepth > 0) {
+                skipDepth++;
+                return;
+            }
+            if ("si".equals(localName) && ++index < masked.length && masked[index] != null) {
+                copier.writeSharedString(qName, masked[index]);
+                skipDepth = 1;
+                return;
+            }
+            copier.startElement(uri, localName, qName, attributes);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (skipDepth > 0) {
+                skipDepth--;
+                return;
+            }
+            copier.endElement(uri, localName, qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (skipDepth == 0) {
+                copier.characters(ch, start, length);
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+    }
+
+    /**
+     * Writes SAX events back out as XML. A held region (one cell) stays in the buffer until
+     * it is kept or dropped.
+     */
+    private static final class XmlCopier {
+
+        private final Writer writer;
+        private final StringBuilder buffer = new StringBuilder(FLUSH_CHARS + 1024);
+        private final List<String> pendingNamespaces = new ArrayList<>();
+        // Start tag written without its closing '>' yet, so empty elements can end with "/>"
+        private boolean tagOpen;
+        private int held = -1;
+
+        private XmlCopier(Writer writer) {
+            this.writer = writer;
+        }
+
+        void startDocument() {
+            buffer.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        }
+
+        void endDocument() throws SAXException {
+            closeTag();
+            flush(true);
+        }
+
+        void startPrefixMapping(String prefix, String uri) {
+            pendingNamespaces.add(prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix);
+            pendingNamespaces.add(uri);
+        }
+
+        void startElement(String uri, String localName, String qName, Attributes attributes) {
+            closeTag();
+            buffer.append('<').append(qName);
+            for (int i = 0; i < pendingNamespaces.size(); i += 2) {
+                appendAttribute(pendingNamespaces.get(i), pendingNamespaces.get(i + 1));
+            }
+            pendingNamespaces.clear();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                appendAttribute(attributes.getQName(i), attributes.getValue(i));
+            }
+            tagOpen = true;
+        }
+
+        void endElement(String uri, String localName, String qName) throws SAXException {
+            if (tagOpen) {
+                buffer.append("/>");
+                tagOpen = false;
+            } else {
+                buffer.append("</").append(qName).append('>');
+            }
+            flush(false);
+        }
+
+        void characters(char[] ch, int start, int length) {
+            closeTag();
+            for (int i = start; i < start + length; i++) {
+                char c = ch[i];
+                switch (c) {
+                    case '&': buffer.append("&amp;"); break;
+                    case '<': buffer.append("&lt;"); break;
+                    case '>': buffer.append("&gt;"); break;
+                    case '\r': buffer.append("&#13;"); break;
+                    default: buffer.append(c);
+                }
+            }
+        }
+
+        /**
+         * Start holding output, e.g. before a cell that may be replaced
+         */
+        void hold() {
+            closeTag();
+            held = buffer.length();
+        }
+
+        /**
+         * Keep or drop everything written since hold
+         */
+        void release(boolean keep) {
+            if (!keep) {
+                buffer.setLength(held);
+                tagOpen = false;
+            }
+            held = -1;
+        }
+
+        void writeInlineCell(String cellQName, String reference, String style, String value) {
+            String prefix = prefixOf(cellQName);
+            buffer.append('<').append(cellQName);
+            if (reference != null) {
+                appendAttribute("r", reference);
+            }
+            if (style != null) {
+                appendAttribute("s", style);
+            }
+            buffer.append(" t=\"inlineStr\"><").append(prefix).append("is>");
+            appendTextElement(prefix, value);
+            buffer.append("</").append(prefix).append("is></").append(cellQName).append('>');
+        }
+
+        void writeSharedString(String entryQName, String value) {
+            closeTag();
+            buffer.append('<').append(entryQName).append('>');
+            appendTextElement(prefixOf(entryQName), value);
+            buffer.append("</").append(entryQName).append('>');
+        }
+
+        private void appendTextElement(String prefix, String value) {
+            buffer.append('<').append(prefix).append('t');
+            if (!value.isEmpty() && (value.charAt(0) <= ' ' || value.charAt(value.length() - 1) <= ' ')) {
+                buffer.append(" xml:space=\"preserve\"");
+            }
+            buffer.append('>');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '&') {
+                    buffer.append("&amp;");
+                } else if (c == '<') {
+                    buffer.append("&lt;");
+                } else if (c == '>') {
+                    buffer.append("&gt;");
+                } else if (c == '\r') {
+                    buffer.append("&#13;");
+                } else if (c < ' ' && c != '\t' && c != '\n') {
+                    // Control chars are not allowed in XML; spreadsheets escape them as _xHHHH_
+                    buffer.append(String.format("_x%04X_", (int) c));
+                } else {
+                    buffer.append(c);
+                }
+            }
+            buffer.append("</").append(prefix).append("t>");
+        }
+
+        private void appendAttribute(String name, String value) {
+            buffer.append(' ').append(name).append("=\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '&': buffer.append("&amp;"); break;
+                    case '<': buffer.append("&lt;"); break;
+                    case '"': buffer.append("&quot;"); break;
+                    case '\t': buffer.append("&#9;"); break;
+                    case '\n': buffer.append("&#10;"); break;
+                    case '\r': buffer.append("&#13;"); break;
+                    default: buffer.append(c);
+                }
+            }
+            buffer.append('"');
+        }
+
+        private void closeTag() {
+            if (tagOpen) {
+                buffer.append('>');
+                tagOpen = false;
+            }
+        }
+
+        private void flush(boolean force) throws SAXException {
+            if (held >= 0 || (!force && buffer.length() < FLUSH_CHARS)) {
+                return;
+            }
+            try {
+                writer.append(buffer);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+            buffer.setLength(0);
+        }
+
+        private static String prefixOf(String qName) {
+            int colon = qName.indexOf(':');
+            return colon < 0 ? "" : qName.substring(0, colon + 1);
+        }
+    }
+}
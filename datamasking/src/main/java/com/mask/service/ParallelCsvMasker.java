@@ -0,0 +1,441 @@
+package com.mask.service;
+
+import com.mask.service.MaskingPlan.ColumnMasker;
+import com.mask.util.MaskBuffer;
+import com.mask.util.MaskingRandom;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * CSV masking that splits the input into record-aligned byte chunks and masks
+ * them on a fork-join pool, writing the results back in input order. Chunks are
+ * tokenized as bytes; commons-csv re-reads any chunk the tokenizer rejects.
+ */
+@Service
+public class ParallelCsvMasker {
+
+    private static final CSVFormat HEADER_FORMAT = CSVFormat.Builder.create(CSVFormat.DEFAULT)
+        .setHeader()
+        .setSkipHeaderRecord(true)
+        .setIgnoreHeaderCase(true)
+        .setTrim(true)
+        .setIgnoreSurroundingSpaces(true)
+        .build();
+
+    private static final CSVFormat RECORD_FORMAT = CSVFormat.Builder.create(CSVFormat.DEFAULT)
+        .setTrim(true)
+        .setIgnoreSurroundingSpaces(true)
+        .build();
+
+    private static final CSVFormat OUTPUT_FORMAT = CSVFormat.DEFAULT;
+    private static final String RECORD_SEPARATOR = OUTPUT_FORMAT.getRecordSeparator();
+
+    // 0 means one worker per available processor
+    @Value("${app.masking.csv.workers:0}")
+    private int workers;
+
+    @Value("${app.masking.csv.chunk-size:4194304}")
+    private int chunkSize;
+
+    // How each output column is produced
+    private static final byte PASS_THROUGH = 0;
+    private static final byte MASKED = 1;
+    private static final byte BUFFERED = 2;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Mask a CSV file chunk by chunk, returning the number of data records written
+     */
+    public long mask(Path inputPath, Path outputPath, MaskingPlan plan, MaskingProgress progress) throws Exception {
+        long startNanos = System.nanoTime();
+        ForkJoinPool workerPool = getPool();
+        int maxInFlight = workerPool.getParallelism() * 2;
+
+        try (InputStream input = Files.newInputStream(inputPath);
+             OutputStream output = new BufferedOutputStream(Files.newOutputStream(outputPath), 1 << 16)) {
+
+            RecordAlignedChunker chunker = new RecordAlignedChunker(input, Math.max(chunkSize, 64 * 1024));
+            byte[] firstChunk = chunker.next();
+            // Blank lines before the header are skipped, as the parser does
+            while (firstChunk != null && RecordAlignedChunker.isBlank(firstChunk)) {
+                progress.addBytes(firstChunk.length);
+                firstChunk = chunker.next();
+            }
+            if (firstChunk == null) {
+                throw new Exception("No headers found in CSV file");
+            }
+
+            // Header is the first record of the first chunk
+            int headerEnd = RecordAlignedChunker.firstRecordEnd(firstChunk);
+            Map<String, Integer> headerMap;
+            try (CSVParser headerParser = HEADER_FORMAT.parse(new StringReader(
+                    new String(firstChunk, 0, headerEnd, StandardCharsets.UTF_8)))) {
+                headerMap = headerParser.getHeaderMap();
+            }
+            if (headerMap == null || headerMap.isEmpty()) {
+                throw new Exception("No headers found in CSV file");
+            }
+
+            List<String> headers = new ArrayList<>(headerMap.keySet());
+            int[] sourceIndexes = new int[headers.size()];
+            for (int i = 0; i < sourceIndexes.length; i++) {
+                sourceIndexes[i] = headerMap.get(headers.get(i));
+            }
+            ColumnMasker[] maskers = plan.bind(headers);
+            byte[] modes = new byte[maskers.length];
+            for (int i = 0; i < maskers.length; i++) {
+                modes[i] = MaskingPlan.isPassThrough(maskers[i]) ? PASS_THROUGH
+                    : MaskingPlan.writesToBuffer(maskers[i]) ? BUFFERED : MASKED;
+            }
+            progress.addBytes(headerEnd);
+
+            // Print headers unchanged
+            StringBuilder headerLine = new StringBuilder();
+            new CSVPrinter(headerLine, OUTPUT_FORMAT).printRecord(headers);
+            output.write(headerLine.toString().getBytes(StandardCharsets.UTF_8));
+
+            // Chunks take their random source from the job's in input order, so output is reproducible
+            MaskingRandom jobRandom = MaskingRandom.current();
+            Deque<ForkJoinTask<MaskedChunk>> inFlight = new ArrayDeque<>();
+            long recordCount = 0;
+            try {
+                byte[] chunk = firstChunk;
+                int offset = headerEnd;
+                while (chunk != null) {
+                    byte[] data = chunk;
+                    int from = offset;
+                    MaskingRandom chunkRandom = jobRandom.split();
+                    inFlight.add(workerPool.submit(() -> maskChunk(data, from, sourceIndexes, maskers, modes, chunkRandom)));
+                    if (inFlight.size() >= maxInFlight) {
+                        recordCount += writeChunk(inFlight.poll().join(), output, progress);
+                    }
+                    chunk = chunker.next();
+                    offset = 0;
+                }
+                while (!inFlight.isEmpty()) {
+                    recordCount += writeChunk(inFlight.poll().join(), output, progress);
+                }
+            } finally {
+                inFlight.forEach(task -> task.cancel(true));
+            }
+
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            double megabytes = chunker.getBytesRead() / (1024.0 * 1024.0);
+            System.out.println(String.format("Masked %d records (%.1f MB) in %d ms: %.1f MB/s on %d workers",
+                recordCount, megabytes, elapsedMillis, megabytes * 1000 / elapsedMillis, workerPool.getParallelism()));
+            return recordCount;
+        }
+    }
+
+    /**
+     * Parse and mask one chunk of complete records. Fields are byte slices; only fields
+     * of masked columns are decoded, and fields of columns without a technique are
+     * copied as they are when printing the value would give the same bytes.
+     */
+    private MaskedChunk maskChunk(byte[] data, int offset, int[] sourceIndexes, ColumnMasker[] maskers,
+                                  byte[] modes, MaskingRandom random) throws IOException {
+        int inputBytes = data.length - offset;
+        Utf8Output output = new Utf8Output(inputBytes + inputBytes / 8);
+        // Allocation-free maskers write here and the format quotes straight from it
+        MaskBuffer cell = new MaskBuffer();
+        CsvByteTokenizer fields = new CsvByteTokenizer(data, offset, data.length);
+        long records = 0;
+
+        MaskingRandom previousRandom = MaskingRandom.install(random);
+        try {
+            while (true) {
+                try {
+                    if (!fields.nextRecord()) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    // Malformed for the tokenizer; commons-csv reads the chunk again and reports what's wrong
+                    return maskChunkWithCommons(data, offset, sourceIndexes, maskers);
+                }
+                records++;
+                for (int i = 0; i < maskers.length; i++) {
+                    int sourceIndex = sourceIndexes[i];
+                    boolean present = sourceIndex < fields.size();
+                    if (modes[i] == PASS_THROUGH && present && fields.isPlain(sourceIndex)) {
+                        if (i > 0) {
+                            output.write((byte) ',');
+                        }
+                        fields.copyRaw(sourceIndex, output);
+                        continue;
+                    }
+
+                    String originalValue = present ? fields.value(sourceIndex) : "";
+                    if (modes[i] == PASS_THROUGH) {
+                        OUTPUT_FORMAT.print(originalValue, output, i == 0);
+                    } else if (modes[i] == BUFFERED) {
+                        maskers[i].maskTo(originalValue, cell.reset());
+                        OUTPUT_FORMAT.print(cell, output, i == 0);
+                    } else {
+                        OUTPUT_FORMAT.print(maskers[i].mask(originalValue), output, i == 0);
+                    }
+                }
+                output.append(RECORD_SEPARATOR);
+            }
+        } finally {
+            MaskingRandom.install(previousRandom);
+        }
+        return new MaskedChunk(output, records, inputBytes);
+    }
+
+    private MaskedChunk maskChunkWithCommons(byte[] data, int offset, int[] sourceIndexes,
+                                             ColumnMasker[] maskers) throws IOException {
+        int inputBytes = data.length - offset;
+        Utf8Output output = new Utf8Output(inputBytes + inputBytes / 8);
+        long records = 0;
+        try (CSVParser parser = RECORD_FORMAT.parse(new StringReader(
+                 new String(data, offset, inputBytes, StandardCharsets.UTF_8)));
+             CSVPrinter printer = new CSVPrinter(output, OUTPUT_FORMAT)) {
+            for (CSVRecord record : parser) {
+                records++;
+                for (int i = 0; i < maskers.length; i++) {
+                    int sourceIndex = sourceIndexes[i];
+                    printer.print(maskers[i].mask(sourceIndex < record.size() ? record.get(sourceIndex) : ""));
+                }
+                printer.println();
+            }
+        }
+        return new MaskedChunk(output, records, inputBytes);
+    }
+
+    private long writeChunk(MaskedChunk chunk, OutputStream out, MaskingProgress progress) throws IOException {
+        chunk.output.writeTo(out);
+        progress.addRows(chunk.records);
+        progress.addBytes(chunk.inputBytes);
+        return chunk.records;
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            int parallelism = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class MaskedChunk {
+        private final Utf8Output output;
+        private final long records;
+        private final long inputBytes;
+
+        private MaskedChunk(Utf8Output output, long records, long inputBytes) {
+            this.output = output;
+            this.records = records;
+            this.inputBytes = inputBytes;
+        }
+    }
+
+    /**
+     * Reads the input in blocks of roughly the chunk size, cutting only at line
+     * breaks (LF, CRLF or a bare CR) that are outside quoted fields so every chunk
+     * holds whole records.
+     * Cut points depend only on the content: the last record end within the chunk
+     * size, or the first one after it when a single record is larger.
+     */
+    static final class RecordAlignedChunker {
+
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3;
+        // Part way through a multi-byte whitespace char before a field, named by the bytes seen
+        private static final int AFTER_E1 = 4;
+        private static final int AFTER_E1_9A = 5;
+        private static final int AFTER_E2 = 6;
+        private static final int AFTER_E2_80 = 7;
+        private static final int AFTER_E2_81 = 8;
+        private static final int AFTER_E3 = 9;
+        private static final int AFTER_E3_80 = 10;
+
+        private final InputStream input;
+        private final int chunkSize;
+        private byte[] buffer;
+        private int length;
+        private int scanned;
+        private int lastBoundary;
+        private int state = FIELD_START;
+        // The last byte scanned was a CR ending a record; the record ends after it unless an LF follows
+        private boolean afterCr;
+        private boolean eof;
+        private long bytesRead;
+
+        RecordAlignedChunker(InputStream input, int chunkSize) {
+            this.input = input;
+            this.chunkSize = chunkSize;
+            this.buffer = new byte[chunkSize];
+        }
+
+        /**
+         * Next chunk of whole records, or null at end of input
+         */
+        byte[] next() throws IOException {
+            while (true) {
+                scan();
+                if (lastBoundary > 0 && (length >= chunkSize || eof)) {
+                    return cut(lastBoundary);
+                }
+                if (eof) {
+                    // Trailing record without a line break
+                    return length > 0 ? cut(length) : null;
+                }
+                if (length == buffer.length) {
+                    // A single record is larger than the buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = input.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                    bytesRead += read;
+                }
+            }
+        }
+
+        long getBytesRead() {
+            return bytesRead;
+        }
+
+        private byte[] cut(int end) {
+            byte[] chunk = Arrays.copyOfRange(buffer, 0, end);
+            System.arraycopy(buffer, end, buffer, 0, length - end);
+            length -= end;
+            // Rescan the carried-over bytes, a cut always starts a new record
+            scanned = 0;
+            state = FIELD_START;
+            afterCr = false;
+            lastBoundary = 0;
+            return chunk;
+        }
+
+        private void scan() {
+            int current = state;
+            for (int i = scanned; i < length; i++) {
+                byte b = buffer[i];
+                if (afterCr && b != '\n') {
+                    boundary(i);
+                }
+                current = advance(current, b);
+                afterCr = current == FIELD_START && b == '\r';
+                if (current == FIELD_START && b == '\n') {
+                    boundary(i + 1);
+                }
+            }
+            scanned = length;
+            state = current;
+        }
+
+        private void boundary(int end) {
+            if (end <= chunkSize || lastBoundary == 0) {
+                lastBoundary = end;
+            }
+        }
+
+        /**
+         * Whether a chunk holds nothing but line breaks
+         */
+        static boolean isBlank(byte[] chunk) {
+            for (byte b : chunk) {
+                if (b != '\n' && b != '\r') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Offset just past the first record in a chunk, after any blank lines before it
+         */
+        static int firstRecordEnd(byte[] chunk) {
+            int start = 0;
+            while (start < chunk.length && (chunk[start] == '\n' || chunk[start] == '\r')) {
+                start++;
+            }
+            int current = FIELD_START;
+            for (int i = start; i < chunk.length; i++) {
+                current = advance(current, chunk[i]);
+                if (current == FIELD_START && (chunk[i] == '\n' || chunk[i] == '\r')) {
+                    return chunk[i] == '\r' && i + 1 < chunk.length && chunk[i + 1] == '\n' ? i + 2 : i + 1;
+                }
+            }
+            return chunk.length;
+        }
+
+        /**
+         * Quote state after one more byte. Whitespace before a field is skipped the way the
+         * parser's ignoreSurroundingSpaces does, including Unicode whitespace, so a quote
+         * after it still opens a quoted field. CR ends a record like LF does.
+         */
+        private static int advance(int state, byte b) {
+            int value = b & 0xFF;
+            switch (state) {
+                case FIELD_START:
+                    if (b == '"') {
+                        return QUOTED;
+                    }
+                    if (b == ',' || value == ' ' || (value >= '\t' && value <= '\r') || (value >= 0x1C && value <= 0x1F)) {
+                        return FIELD_START;
+                    }
+                    if (value == 0xE1) {
+                        return AFTER_E1;
+                    }
+                    if (value == 0xE2) {
+                        return AFTER_E2;
+                    }
+                    return value == 0xE3 ? AFTER_E3 : UNQUOTED;
+                case UNQUOTED:
+                    return b == ',' || b == '\n' || b == '\r' ? FIELD_START : UNQUOTED;
+                case QUOTED:
+                    return b == '"' ? QUOTE_IN_QUOTED : QUOTED;
+                case QUOTE_IN_QUOTED:
+                    if (b == '"') {
+                        return QUOTED;
+                    }
+                    return b == ',' || b == '\n' || b == '\r' ? FIELD_START : UNQUOTED;
+                // U+1680
+                case AFTER_E1:
+                    return value == 0x9A ? AFTER_E1_9A : advance(UNQUOTED, b);
+                case AFTER_E1_9A:
+                    return value == 0x80 ? FIELD_START : advance(UNQUOTED, b);
+                // U+2000 to U+200A except the non-breaking U+2007, U+2028, U+2029 and U+205F
+                case AFTER_E2:
+                    return value == 0x80 ? AFTER_E2_80 : value == 0x81 ? AFTER_E2_81 : advance(UNQUOTED, b);
+                case AFTER_E2_80:
+                    return (value >= 0x80 && value <= 0x8A && value != 0x87) || value == 0xA8 || value == 0xA9
+                        ? FIELD_START : advance(UNQUOTED, b);
+                case AFTER_E2_81:
+                    return value == 0x9F ? FIELD_START : advance(UNQUOTED, b);
+                // U+3000
+                case AFTER_E3:
+                    return value == 0x80 ? AFTER_E3_80 : advance(UNQUOTED, b);
+                default:
+                    return value == 0x80 ? FIELD_START : advance(UNQUOTED, b);
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.mask.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonFactoryBuilder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.mask.util.MaskingRandom;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * JSON Lines (NDJSON) masking. Every line is an independent record, so the input is cut
+ * into line-aligned byte chunks that are masked on a fork-join pool and written back in
+ * input order, one compact record per line. Blank lines are dropped.
+ */
+@Service
+public class ParallelJsonLinesMasker {
+
+    // Records are separated by the line breaks written after them, not by the generator
+    private static final JsonFactory JSON_FACTORY = new JsonFactoryBuilder()
+        .rootValueSeparator((String) null)
+        .build();
+
+    // 0 means one worker per available processor
+    @Value("${app.masking.jsonl.workers:0}")
+    private int workers;
+
+    @Value("${app.masking.jsonl.chunk-size:4194304}")
+    private int chunkSize;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Mask a JSON Lines file chunk by chunk, returning the number of records written
+     */
+    public long mask(Path inputPath, Path outputPath, MaskingPlan plan, MaskingProgress progress) throws Exception {
+        long startNanos = System.nanoTime();
+        ForkJoinPool workerPool = getPool();
+        int maxInFlight = workerPool.getParallelism() * 2;
+
+        try (InputStream input = Files.newInputStream(inputPath);
+             OutputStream output = new BufferedOutputStream(Files.newOutputStream(outputPath), 1 << 16)) {
+
+            LineAlignedChunker chunker = new LineAlignedChunker(input, Math.max(chunkSize, 64 * 1024));
+
+            // Chunks take their random source from the job's in input order, so output is reproducible
+            MaskingRandom jobRandom = MaskingRandom.current();
+            Deque<ForkJoinTask<MaskedChunk>> inFlight = new ArrayDeque<>();
+            long recordCount = 0;
+            try {
+                byte[] chunk;
+                while ((chunk = chunker.next()) != null) {
+                    byte[] data = chunk;
+                    MaskingRandom chunkRandom = jobRandom.split();
+                    inFlight.add(workerPool.submit(() -> maskChunk(data, plan, chunkRandom)));
+                    if (inFlight.size() >= maxInFlight) {
+                        recordCount += writeChunk(inFlight.poll().join(), output, progress);
+                    }
+                }
+                while (!inFlight.isEmpty()) {
+                    recordCount += writeChunk(inFlight.poll().join(), output, progress);
+                }
+            } finally {
+                inFlight.forEach(task -> task.cancel(true));
+            }
+
+            long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+            double megabytes = chunker.getBytesRead() / (1024.0 * 1024.0);
+            System.out.println(String.format("Masked %d JSON lines (%.1f MB) in %d ms: %.1f MB/s on %d workers",
+                recordCount, megabytes, elapsedMillis, megabytes * 1000 / elapsedMillis, workerPool.getParallelism()));
+            return recordCount;
+        }
+    }
+
+    /**
+     * Mask each line of a chunk of whole lines with one generator for the chunk
+     */
+    private MaskedChunk maskChunk(byte[] data, MaskingPlan plan, MaskingRandom random) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length + data.length / 8);
+        long records = 0;
+
+        MaskingRandom previousRandom = MaskingRandom.install(random);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(output, JsonEncoding.UTF8)) {
+            int lineStart = 0;
+            while (lineStart < data.length) {
+                int lineEnd = lineStart;
+                while (lineEnd < data.length && data[lineEnd] != '\n') {
+                    lineEnd++;
+                }
+                if (!isBlank(data, lineStart, lineEnd)) {
+                    try (JsonParser parser = JSON_FACTORY.createParser(data, lineStart, lineEnd - lineStart)) {
+                        maskRecord(parser, generator, plan);
+                    }
+                    generator.writeRaw('\n');
+                    records++;
+                }
+                lineStart = lineEnd + 1;
+            }
+        } finally {
+            MaskingRandom.install(previousRandom);
+        }
+        return new MaskedChunk(output, records, data.length);
+    }
+
+    /**
+     * Copy the single JSON value on a line token by token, masking scalar object fields
+     * the same way whole-document JSON masking does
+     */
+    private void maskRecord(JsonParser parser, JsonGenerator generator, MaskingPlan plan) throws IOException {
+        JsonToken token = parser.nextToken();
+        int depth = 0;
+
+        while (token != null) {
+            if (token.isScalarValue() && parser.getParsingContext().inObject()) {
+                String originalValue = MaskingService.scalarText(parser, token);
+                generator.writeString(plan.forColumn(parser.getCurrentName()).mask(originalValue));
+            } else {
+                generator.copyCurrentEvent(parser);
+            }
+
+            if (token.isStructStart()) {
+                depth++;
+            } else if (token.isStructEnd()) {
+                depth--;
+            }
+            if (depth == 0) {
+                break;
+            }
+            token = parser.nextToken();
+        }
+        if (parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Expected one JSON value per line");
+        }
+    }
+
+    // Lines of only whitespace, including the carriage return of CRLF input
+    private static boolean isBlank(byte[] data, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = data[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long writeChunk(MaskedChunk chunk, OutputStream out, MaskingProgress progress) throws IOException {
+        chunk.output.writeTo(out);
+        progress.addRows(chunk.records);
+        progress.addBytes(chunk.inputBytes);
+        return chunk.records;
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            int parallelism = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static final class MaskedChunk {
+        private final ByteArrayOutputStream output;
+        private final long records;
+        private final long inputBytes;
+
+        private MaskedChunk(ByteArrayOutputStream output, long records, long inputBytes) {
+            this.output = output;
+            this.records = records;
+            this.inputBytes = inputBytes;
+        }
+    }
+
+    /**
+     * Reads the input in blocks of roughly the chunk size, cutting only at line breaks.
+     * JSON strings cannot hold a raw line break, so every chunk holds whole records. Cut
+     * points depend only on the content: the last line end within the chunk size, or the
+     * first one after it when a single line is larger.
+     */
+    static final class LineAlignedChunker {
+
+        private final InputStream input;
+        private final int chunkSize;
+        private byte[] buffer;
+        private int length;
+        // Bytes past the chunk size already searched for a line break
+        private int scanned;
+        private boolean eof;
+        private long bytesRead;
+
+        LineAlignedChunker(InputStream input, int chunkSize) {
+            this.input = input;
+            this.chunkSize = chunkSize;
+            this.buffer = new byte[chunkSize];
+        }
+
+        /**
+         * Next chunk of whole lines, or null at end of input
+         */
+        byte[] next() throws IOException {
+            while (true) {
+                if (length >= chunkSize || eof) {
+                    int boundary = lineEnd();
+                    if (boundary > 0) {
+                        return cut(boundary);
+                    }
+                    if (eof) {
+                        // Trailing line without a line break
+                        return length > 0 ? cut(length) : null;
+                    }
+                }
+                if (length == buffer.length) {
+                    // A single line is larger than the buffer
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = input.read(buffer, length, buffer.length - length);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    length += read;
+                    bytesRead += read;
+                }
+            }
+        }
+
+        long getBytesRead() {
+            return bytesRead;
+        }
+
+        // Offset just past the cut point, or 0 when more input is needed
+        private int lineEnd() {
+            for (int i = Math.min(length, chunkSize) - 1; i >= 0; i--) {
+                if (buffer[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            for (int i = Math.max(scanned, chunkSize); i < length; i++) {
+                if (buffer[i] == '\n') {
+                    return i + 1;
+                }
+            }
+            scanned = length;
+            return 0;
+        }
+
+        private byte[] cut(int end) {
+            byte[] chunk = Arrays.copyOfRange(buffer, 0, end);
+            System.arraycopy(buffer, end, buffer, 0, length - end);
+            length -= end;
+            scanned = 0;
+            return chunk;
+        }
+    }
+}
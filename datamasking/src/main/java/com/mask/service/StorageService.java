@@ -4,11 +4,13 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.apache.commons.io.FilenameUtils;
 
-import java.io.File;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HexFormat;
 
 @Service
 public class StorageService {
@@ -16,17 +18,61 @@ public class StorageService {
     @Value("${app.storage-dir:./storage}")
     private String storageDir;
 
+    /**
+     * Store an upload under a content-addressed, sharded path (ab/cd/abcd...ef.ext)
+     * so no single directory grows with the number of uploads
+     */
     public Path store(String filename, InputStream inputStream) throws Exception {
-        File dir = new File(storageDir);
-        if (!dir.exists()) dir.mkdirs();
+        Path root = getRoot();
+        Files.createDirectories(root);
 
-        String safeName = System.currentTimeMillis() + "_" + FilenameUtils.getName(filename);
-        Path destination = Path.of(dir.getAbsolutePath(), safeName);
-        Files.copy(inputStream, destination, StandardCopyOption.REPLACE_EXISTING);
-        return destination;
+        // Copy to a temp file while hashing, then move it into place
+        Path tempFile = Files.createTempFile(root, "upload_", ".tmp");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream hashingStream = new DigestInputStream(inputStream, digest)) {
+                Files.copy(hashingStream, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            String hash = HexFormat.of().formatHex(digest.digest());
+            String extension = FilenameUtils.getExtension(FilenameUtils.getName(filename)).toLowerCase();
+            Path shardDir = root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4));
+            Files.createDirectories(shardDir);
+
+            Path destination = shardDir.resolve(extension.isEmpty() ? hash : hash + "." + extension);
+            if (!Files.exists(destination)) {
+                Files.move(tempFile, destination, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return destination;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Path of a stored file relative to the storage directory, as saved on UploadedFile
+     */
+    public String toStoredPath(Path path) {
+        return FilenameUtils.separatorsToUnix(getRoot().relativize(path.toAbsolutePath().normalize()).toString());
+    }
+
+    /**
+     * Resolve a path saved by toStoredPath back to the file
+     */
+    public Path resolve(String storedPath) {
+        Path root = getRoot();
+        Path resolved = root.resolve(storedPath).normalize();
+        if (!resolved.startsWith(root)) {
+            throw new IllegalArgumentException("Stored path escapes storage directory: " + storedPath);
+        }
+        return resolved;
     }
 
     public Path getPath(String storedName) {
         return Path.of(storageDir, storedName);
     }
+
+    public Path getRoot() {
+        return Path.of(storageDir).toAbsolutePath().normalize();
+    }
 }
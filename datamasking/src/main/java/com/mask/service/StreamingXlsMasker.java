@@ -0,0 +1,655 @@
+package com.mask.service;
+
+import com.mask.service.MaskingPlan.ColumnMasker;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFEventFactory;
+import org.apache.poi.hssf.eventusermodel.HSSFListener;
+import org.apache.poi.hssf.eventusermodel.HSSFRequest;
+import org.apache.poi.hssf.model.InternalSheet;
+import org.apache.poi.hssf.model.InternalWorkbook;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DBCellRecord;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.DimensionsRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FontRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.IndexRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.record.common.UnicodeString;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DocumentOutputStream;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * XLS masking that reads BIFF8 records with the HSSF event model and writes the output
+ * workbook record by record. Rows are masked in blocks of 32 once a later row block starts
+ * and spooled to a temp file per sheet; only the output shared string table stays in memory,
+ * since BIFF8 stores it ahead of the sheets.
+ */
+@Service
+public class StreamingXlsMasker {
+
+    // Default cell format of a new workbook, as HSSFCell uses
+    private static final short DEFAULT_CELL_XF = 0x0F;
+
+    // Write numeric, date and boolean cells back typed, with their styles, where the masked text allows
+    @Value("${app.masking.excel.typed-cells:false}")
+    private boolean typedCells;
+
+    /**
+     * Mask every sheet of an XLS workbook into a new workbook
+     */
+    public void mask(Path inputPath, Path outputPath, MaskingPlan plan, MaskingProgress progress) throws Exception {
+        List<SheetWriter> sheets = new ArrayList<>();
+        List<SheetWriter> tabOrder = new ArrayList<>();
+
+        try (HSSFWorkbook outputWorkbook = new HSSFWorkbook()) {
+            InternalWorkbook globals = outputWorkbook.getInternalWorkbook();
+
+            try (POIFSFileSystem input = new POIFSFileSystem(inputPath.toFile(), true)) {
+                RecordMasker recordMasker = new RecordMasker(globals, outputPath.getParent(), plan, progress, sheets,
+                    typedCells);
+                HSSFRequest request = new HSSFRequest();
+                request.addListenerForAllRecords(recordMasker.formats);
+                new HSSFEventFactory().processWorkbookEvents(request, input);
+
+                // Sheets are written in tab order, which their substreams need not follow
+                List<BoundSheetRecord> streamOrder = Arrays.asList(
+                    BoundSheetRecord.orderByBofPosition(recordMasker.boundSheets));
+                if (streamOrder.size() != sheets.size()) {
+                    throw new IllegalStateException("Workbook lists " + streamOrder.size() + " sheets but stores "
+                        + sheets.size());
+                }
+                for (BoundSheetRecord sheet : recordMasker.boundSheets) {
+                    outputWorkbook.createSheet(sheet.getSheetname());
+                    tabOrder.add(sheets.get(streamOrder.indexOf(sheet)));
+                }
+            }
+
+            writeWorkbook(globals, tabOrder, outputPath);
+        } finally {
+            for (SheetWriter sheet : sheets) {
+                sheet.delete();
+            }
+        }
+    }
+
+    /**
+     * Lay out the globals and the spooled sheets as the Workbook stream of a new file
+     */
+    private static void writeWorkbook(InternalWorkbook globals, List<SheetWriter> sheets, Path outputPath)
+            throws IOException {
+        globals.preSerialize();
+        int offset = globals.getSize();
+        for (int i = 0; i < sheets.size(); i++) {
+            globals.setSheetBof(i, offset);
+            offset += sheets.get(i).layout(offset, i == 0);
+        }
+        byte[] globalsBytes = new byte[globals.getSize()];
+        globals.serialize(0, globalsBytes);
+
+        Files.deleteIfExists(outputPath);
+        try (POIFSFileSystem output = POIFSFileSystem.create(outputPath.toFile())) {
+            try (OutputStream workbookStream = new BufferedOutputStream(
+                    new DocumentOutputStream(output.getRoot(), "Workbook"), 1 << 16)) {
+                workbookStream.write(globalsBytes);
+                for (SheetWriter sheet : sheets) {
+                    sheet.writeTo(workbookStream);
+                }
+            }
+            output.writeFilesystem();
+        }
+    }
+
+    /**
+     * Turns cell records into text and hands each finished row block to the sheet's writer.
+     * Values follow the text the workbook path reads from cells.
+     */
+    private static final class RecordMasker implements HSSFListener {
+
+        private final FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(this);
+        private final InternalWorkbook globals;
+        private final Path tempDirectory;
+        private final MaskingPlan plan;
+        private final MaskingProgress progress;
+        private final List<SheetWriter> sheets;
+        private final List<BoundSheetRecord> boundSheets = new ArrayList<>();
+        private final XfPool xfPool;
+        private SSTRecord sharedStrings;
+        private boolean date1904;
+        private int depth;
+        private SheetWriter sheet;
+        private FormulaRecord stringFormula;
+
+        private RecordMasker(InternalWorkbook globals, Path tempDirectory, MaskingPlan plan, MaskingProgress progress,
+                             List<SheetWriter> sheets, boolean typedCells) {
+            this.globals = globals;
+            this.tempDirectory = tempDirectory;
+            this.plan = plan;
+            this.progress = progress;
+            this.sheets = sheets;
+            this.xfPool = typedCells ? new XfPool(globals, formats) : null;
+        }
+
+        @Override
+        public void processRecord(Record record) {
+            try {
+                processSheetRecord(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void processSheetRecord(Record record) throws IOException {
+            switch (record.getSid()) {
+                case BOFRecord.sid:
+                    if (((BOFRecord) record).getType() != BOFRecord.TYPE_WORKBOOK && depth++ == 0) {
+                        sheet = new SheetWriter(globals, Files.createTempFile(tempDirectory, "sheet_", ".biff"),
+                            plan, progress, xfPool, date1904);
+                        sheets.add(sheet);
+                    }
+                    return;
+                case EOFRecord.sid:
+                    if (depth > 0 && --depth == 0) {
+                        sheet.finish();
+                    }
+                    return;
+                case BoundSheetRecord.sid:
+                    boundSheets.add((BoundSheetRecord) record);
+                    return;
+                case DateWindow1904Record.sid:
+                    date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+                    return;
+                case SSTRecord.sid:
+                    sharedStrings = (SSTRecord) record;
+                    return;
+                case FontRecord.sid:
+                    if (xfPool != null) {
+                        xfPool.inputFonts.add((FontRecord) record);
+                    }
+                    return;
+                case ExtendedFormatRecord.sid:
+                    if (xfPool != null) {
+                        xfPool.inputXfs.add((ExtendedFormatRecord) record);
+                    }
+                    return;
+                default:
+                    break;
+            }
+            // Charts embedded in a sheet nest their own substreams
+            if (depth != 1) {
+                return;
+            }
+
+            switch (record.getSid()) {
+                case RowRecord.sid:
+                    sheet.row(((RowRecord) record).getRowNumber());
+                    break;
+                case LabelSSTRecord.sid:
+                    LabelSSTRecord label = (LabelSSTRecord) record;
+                    sheet.text(label, sharedStrings.getString(label.getSSTIndex()).getString());
+                    break;
+                case LabelRecord.sid:
+                    sheet.text((LabelRecord) record, ((LabelRecord) record).getValue());
+                    break;
+                case NumberRecord.sid:
+                    NumberRecord number = (NumberRecord) record;
+                    boolean date = isDate(number, number.getValue());
+                    sheet.cell(number, new SourceCell(numberText(number.getValue(), date),
+                        date ? SourceCell.DATE : SourceCell.NUMBER, number.getValue()));
+                    break;
+                case BoolErrRecord.sid:
+                    BoolErrRecord boolErr = (BoolErrRecord) record;
+                    if (boolErr.isBoolean()) {
+                        sheet.cell(boolErr, new SourceCell(String.valueOf(boolErr.getBooleanValue()), SourceCell.BOOLEAN, 0));
+                    } else {
+                        sheet.text(boolErr, "");
+                    }
+                    break;
+                case FormulaRecord.sid:
+                    FormulaRecord formula = (FormulaRecord) record;
+                    if (formula.hasCachedResultString()) {
+                        // The result follows in a STRING record
+                        stringFormula = formula;
+                    } else if (formula.getCachedResultTypeEnum() == CellType.NUMERIC) {
+                        sheet.cell(formula, new SourceCell(String.valueOf(formula.getValue()), SourceCell.NUMBER,
+                            formula.getValue()));
+                    } else {
+                        sheet.text(formula, "");
+                    }
+                    break;
+                case StringRecord.sid:
+                    if (stringFormula != null) {
+                        sheet.text(stringFormula, ((StringRecord) record).getString());
+                        stringFormula = null;
+                    }
+                    break;
+                case BlankRecord.sid:
+                    sheet.text((BlankRecord) record, "");
+                    break;
+                case MulBlankRecord.sid:
+                    // A run of blank cells; each is read as empty text like a BLANK record
+                    MulBlankRecord blanks = (MulBlankRecord) record;
+                    for (int i = 0; i < blanks.getNumColumns(); i++) {
+                        sheet.cell(blanks.getRow(), blanks.getFirstColumn() + i, blanks.getXFAt(i),
+                            new SourceCell("", SourceCell.TEXT, 0));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private boolean isDate(CellValueRecordInterface cell, double value) {
+            return DateUtil.isValidExcelDate(value)
+                && DateUtil.isADateFormat(formats.getFormatIndex(cell), formats.getFormatString(cell));
+        }
+
+        private String numberText(double value, boolean date) {
+            if (date) {
+                return DateUtil.getLocalDateTime(value, date1904).toLocalDate().toString();
+            }
+            if (value == Math.floor(value)) {
+                return String.valueOf((long) value);
+            }
+            return String.valueOf(value);
+        }
+    }
+
+    /**
+     * Masks one sheet a row block at a time and spools its ROW, LABELSST and DBCELL records.
+     * The first row is the header and is copied unchanged.
+     */
+    private static final class SheetWriter {
+
+        // Rows held at most when the input has no ROW records to mark its row blocks
+        private static final int MAX_PENDING_ROWS = 2 * DBCellRecord.BLOCK_SIZE;
+
+        private final InternalWorkbook globals;
+        private final Path body;
+        private final OutputStream bodyStream;
+        private final MaskingPlan plan;
+        private final MaskingProgress progress;
+        private final XfPool xfPool;
+        private final boolean date1904;
+        // Rows of the block being read; a cell read again replaces the earlier one
+        private final TreeMap<Integer, TreeMap<Integer, SourceCell>> pendingRows = new TreeMap<>();
+        private final List<Integer> dbCellPositions = new ArrayList<>();
+        private ColumnMasker[] maskers;
+        private long bodySize;
+        private int lastFlushedRow = -1;
+        private boolean cellsSinceRow;
+        private int firstRow = -1;
+        private int lastRow = -1;
+        private int dimensionLastRow = 1;
+        private int dimensionFirstColumn = 0;
+        private int dimensionLastColumn = 1;
+        private List<Record> head;
+        private List<Record> tail;
+
+        private SheetWriter(InternalWorkbook globals, Path body, MaskingPlan plan, MaskingProgress progress,
+                            XfPool xfPool, boolean date1904) throws IOException {
+            this.globals = globals;
+            this.body = body;
+            this.bodyStream = new BufferedOutputStream(Files.newOutputStream(body), 1 << 16);
+            this.plan = plan;
+            this.progress = progress;
+            this.xfPool = xfPool;
+            this.date1904 = date1904;
+        }
+
+        void row(int rowNum) throws IOException {
+            // ROW records lead each row block, so one after cells means the rows above are complete
+            if (cellsSinceRow) {
+                flushRows(rowNum);
+                cellsSinceRow = false;
+            }
+            checkOrder(rowNum);
+            pendingRows.computeIfAbsent(rowNum, r -> new TreeMap<>());
+        }
+
+        void text(CellValueRecordInterface cell, String value) throws IOException {
+            cell(cell, new SourceCell(value, SourceCell.TEXT, 0));
+        }
+
+        void cell(CellValueRecordInterface cell, SourceCell value) throws IOException {
+            cell(cell.getRow(), cell.getColumn(), cell.getXFIndex(), value);
+        }
+
+        void cell(int rowNum, int columnIndex, short xf, SourceCell value) throws IOException {
+            checkOrder(rowNum);
+            // Cells come in row order, so rows above this one are complete
+            if (pendingRows.size() >= MAX_PENDING_ROWS && !pendingRows.containsKey(rowNum)) {
+                flushRows(rowNum);
+            }
+            value.xf = xf;
+            pendingRows.computeIfAbsent(rowNum, r -> new TreeMap<>()).put(columnIndex, value);
+            cellsSinceRow = true;
+        }
+
+        private void checkOrder(int rowNum) {
+            if (rowNum <= lastFlushedRow) {
+                throw new IllegalStateException("Row " + (rowNum + 1) + " is stored after its row block ended");
+            }
+        }
+
+        /**
+         * Mask and write full blocks of 32 complete rows, the ones above the given row. The
+         * input's own DBCELL records can't mark blocks: the event reader never passes them on.
+         */
+        private void flushRows(int beforeRow) throws IOException {
+            while (pendingRows.headMap(beforeRow).size() >= DBCellRecord.BLOCK_SIZE) {
+                List<Map.Entry<Integer, TreeMap<Integer, SourceCell>>> block = new ArrayList<>();
+                while (block.size() < DBCellRecord.BLOCK_SIZE) {
+                    block.add(pendingRows.pollFirstEntry());
+                }
+                writeBlock(block);
+            }
+        }
+
+        /**
+         * Mask and write the rows read so far, in blocks of at most 32 like HSSF writes
+         */
+        private void flushAllRows() throws IOException {
+            while (!pendingRows.isEmpty()) {
+                List<Map.Entry<Integer, TreeMap<Integer, SourceCell>>> block = new ArrayList<>();
+                while (block.size() < DBCellRecord.BLOCK_SIZE && !pendingRows.isEmpty()) {
+                    block.add(pendingRows.pollFirstEntry());
+                }
+                writeBlock(block);
+            }
+        }
+
+        private void writeBlock(List<Map.Entry<Integer, TreeMap<Integer, SourceCell>>> block) throws IOException {
+            for (Map.Entry<Integer, TreeMap<Integer, SourceCell>> row : block) {
+                maskRow(row.getValue());
+            }
+
+            int rowBlockSize = block.size() * RowRecord.ENCODED_SIZE;
+            for (Map.Entry<Integer, TreeMap<Integer, SourceCell>> row : block) {
+                int rowNum = row.getKey();
+                RowRecord rowRecord = new RowRecord(rowNum);
+                if (!row.getValue().isEmpty()) {
+                    rowRecord.setFirstCol(row.getValue().firstKey());
+                    rowRecord.setLastCol(row.getValue().lastKey() + 1);
+                }
+                write(rowRecord);
+                if (firstRow < 0) {
+                    firstRow = rowNum;
+                }
+                lastRow = rowNum;
+                lastFlushedRow = rowNum;
+                dimensionLastRow = Math.max(dimensionLastRow, rowNum + 1);
+            }
+
+            // Offsets to each row's first cell, as RowRecordsAggregate computes them
+            int position = rowBlockSize;
+            int cellOffset = rowBlockSize - RowRecord.ENCODED_SIZE;
+            List<Short> cellOffsets = new ArrayList<>();
+            for (Map.Entry<Integer, TreeMap<Integer, SourceCell>> row : block) {
+                if (row.getValue().isEmpty()) {
+                    continue;
+                }
+                int rowCellSize = 0;
+                for (Map.Entry<Integer, SourceCell> cell : row.getValue().entrySet()) {
+                    rowCellSize += write(cellRecord(row.getKey(), cell.getKey(), cell.getValue()));
+                    dimensionFirstColumn = Math.min(dimensionFirstColumn, cell.getKey());
+                    dimensionLastColumn = Math.max(dimensionLastColumn, cell.getKey() + 1);
+                }
+                position += rowCellSize;
+                cellOffsets.add((short) cellOffset);
+                cellOffset = rowCellSize;
+            }
+
+            short[] offsets = new short[cellOffsets.size()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = cellOffsets.get(i);
+            }
+            dbCellPositions.add((int) bodySize);
+            write(new DBCellRecord(position, offsets));
+        }
+
+        private void maskRow(TreeMap<Integer, SourceCell> cells) {
+            if (maskers == null) {
+                List<String> headers = new ArrayList<>();
+                for (SourceCell cell : cells.values()) {
+                    headers.add(cell.text);
+                    cell.header = true;
+                }
+                maskers = plan.bind(headers);
+                return;
+            }
+            for (Map.Entry<Integer, SourceCell> cell : cells.entrySet()) {
+                int columnIndex = cell.getKey();
+                ColumnMasker masker = columnIndex < maskers.length
+                    ? maskers[columnIndex] : plan.forColumn("Column" + columnIndex);
+                cell.getValue().masked = masker.mask(cell.getValue().text);
+            }
+            progress.addRows(1);
+        }
+
+        /**
+         * Numbers, dates and booleans keep their type when the masked text still reads as one;
+         * everything else is written as text
+         */
+        private Record cellRecord(int rowNum, int columnIndex, SourceCell cell) {
+            if (cell.header) {
+                return labelRecord(rowNum, columnIndex, cell.text);
+            }
+            if (xfPool != null && (cell.kind == SourceCell.NUMBER || cell.kind == SourceCell.DATE)) {
+                Double number = TypedCells.number(cell.value, cell.kind == SourceCell.DATE, date1904, cell.text,
+                    cell.masked);
+                if (number != null) {
+                    NumberRecord record = new NumberRecord();
+                    record.setRow(rowNum);
+                    record.setColumn((short) columnIndex);
+                    record.setXFIndex(xfPool.xfFor(cell.xf));
+                    record.setValue(number);
+                    return record;
+                }
+            } else if (xfPool != null && cell.kind == SourceCell.BOOLEAN) {
+                Boolean bool = TypedCells.bool(cell.masked);
+                if (bool != null) {
+                    BoolErrRecord record = new BoolErrRecord();
+                    record.setRow(rowNum);
+                    record.setColumn((short) columnIndex);
+                    record.setXFIndex(xfPool.xfFor(cell.xf));
+                    record.setValue(bool);
+                    return record;
+                }
+            }
+            return labelRecord(rowNum, columnIndex, cell.masked);
+        }
+
+        private LabelSSTRecord labelRecord(int rowNum, int columnIndex, String value) {
+            if (value.length() > SpreadsheetVersion.EXCEL97.getMaxTextLength()) {
+                throw new IllegalArgumentException("The maximum length of cell contents (text) is "
+                    + SpreadsheetVersion.EXCEL97.getMaxTextLength() + " characters");
+            }
+            LabelSSTRecord label = new LabelSSTRecord();
+            label.setRow(rowNum);
+            label.setColumn((short) columnIndex);
+            label.setXFIndex(DEFAULT_CELL_XF);
+            label.setSSTIndex(globals.addSSTString(new UnicodeString(value)));
+            return label;
+        }
+
+        private int write(Record record) throws IOException {
+            byte[] bytes = record.serialize();
+            bodyStream.write(bytes);
+            bodySize += bytes.length;
+            return bytes.length;
+        }
+
+        void finish() throws IOException {
+            flushAllRows();
+            bodyStream.close();
+        }
+
+        /**
+         * Build the sheet records around the spooled rows for a sheet starting at the
+         * given stream offset, and return the sheet's size. Only the first sheet is selected.
+         */
+        int layout(int offset, boolean first) {
+            head = new ArrayList<>();
+            tail = new ArrayList<>();
+            List<Record> current = head;
+            int headSize = 0;
+            int tailSize = 0;
+            for (Record record : sheetRecords(first)) {
+                if (record instanceof IndexRecord) {
+                    continue;
+                }
+                if (current == head) {
+                    headSize += record.getRecordSize();
+                } else {
+                    tailSize += record.getRecordSize();
+                }
+                current.add(record);
+                if (record instanceof DimensionsRecord) {
+                    current = tail;
+                }
+            }
+
+            // The INDEX record follows the BOF and points at every DBCELL
+            int indexSize = IndexRecord.getRecordSizeForBlockCount(dbCellPositions.size());
+            IndexRecord index = new IndexRecord();
+            index.setFirstRow(firstRow);
+            index.setLastRowAdd1(lastRow + 1);
+            int rowsOffset = offset + headSize + indexSize;
+            for (int position : dbCellPositions) {
+                index.addDbcell(rowsOffset + position);
+            }
+            head.add(1, index);
+            return headSize + indexSize + (int) bodySize + tailSize;
+        }
+
+        private List<Record> sheetRecords(boolean first) {
+            InternalSheet template = InternalSheet.createSheet();
+            template.getWindowTwo().setSelected(first);
+            template.getWindowTwo().setActive(first);
+            template.setDimensions(0, (short) dimensionFirstColumn, dimensionLastRow, (short) dimensionLastColumn);
+            List<Record> records = new ArrayList<>();
+            template.visitContainedRecords(records::add, 0);
+            return records;
+        }
+
+        void writeTo(OutputStream output) throws IOException {
+            for (Record record : head) {
+                output.write(record.serialize());
+            }
+            try (InputStream rows = Files.newInputStream(body)) {
+                rows.transferTo(output);
+            }
+            for (Record record : tail) {
+                output.write(record.serialize());
+            }
+        }
+
+        void delete() throws IOException {
+            bodyStream.close();
+            Files.deleteIfExists(body);
+        }
+    }
+
+    /**
+     * A cell as read, with the value and format of numbers and booleans for typed output
+     */
+    private static final class SourceCell {
+
+        static final byte TEXT = 0;
+        static final byte NUMBER = 1;
+        static final byte DATE = 2;
+        static final byte BOOLEAN = 3;
+
+        final String text;
+        final byte kind;
+        final double value;
+        short xf;
+        boolean header;
+        String masked;
+
+        SourceCell(String text, byte kind, double value) {
+            this.text = text;
+            this.kind = kind;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Output cell formats cloned from the input workbook's, created once per input format
+     */
+    private static final class XfPool {
+
+        private final InternalWorkbook globals;
+        private final FormatTrackingHSSFListener inputFormats;
+        private final List<FontRecord> inputFonts = new ArrayList<>();
+        private final List<ExtendedFormatRecord> inputXfs = new ArrayList<>();
+        private final Map<Short, Short> xfs = new HashMap<>();
+
+        private XfPool(InternalWorkbook globals, FormatTrackingHSSFListener inputFormats) {
+            this.globals = globals;
+            this.inputFormats = inputFormats;
+        }
+
+        short xfFor(short inputXf) {
+            return xfs.computeIfAbsent(inputXf, this::cloneXf);
+        }
+
+        // Mirrors HSSFCellStyle.cloneStyleFrom across workbooks: the format string and font are copied over
+        private short cloneXf(short inputXf) {
+            if (inputXf < 0 || inputXf >= inputXfs.size()) {
+                return DEFAULT_CELL_XF;
+            }
+            ExtendedFormatRecord source = inputXfs.get(inputXf);
+            ExtendedFormatRecord xf = globals.createCellXF();
+            xf.cloneStyleFrom(source);
+            if (source.getFormatIndex() >= BuiltinFormats.FIRST_USER_DEFINED_FORMAT_INDEX) {
+                xf.setFormatIndex(globals.getFormat(inputFormats.getFormatString(source.getFormatIndex()), true));
+            }
+            // Font index 4 is never stored
+            int fontIndex = source.getFontIndex() > 4 ? source.getFontIndex() - 1 : source.getFontIndex();
+            if (fontIndex < inputFonts.size()) {
+                FontRecord font = globals.createNewFont();
+                font.cloneStyleFrom(inputFonts.get(fontIndex));
+                xf.setFontIndex((short) globals.getFontIndex(font));
+            } else {
+                xf.setFontIndex((short) 0);
+            }
+            return (short) (globals.getNumExFormats() - 1);
+        }
+    }
+}
@@ -0,0 +1,666 @@
+package com.mask.service;
+
+import com.mask.service.MaskingPlan.ColumnMasker;
+import com.mask.util.MaskingRandom;
+import jakarta.annotation.PreDestroy;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler.SheetContentsHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbookPr;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * XLSX masking that reads sheets with the XSSF SAX event model and writes through
+ * SXSSF, so only a window of rows is ever held in memory. Workbooks with several
+ * sheets can instead mask each sheet on a worker into its own compressed temp file,
+ * which are then assembled into the output package.
+ */
+@Service
+public class StreamingXlsxMasker {
+
+    private static final String EMPTY_SHEET_DATA = "<sheetData/>";
+    private static final String TEMPLATE_DIMENSION = "<dimension ref=\"A1\"/>";
+
+    @Value("${app.masking.excel.row-window:100}")
+    private int rowWindow;
+
+    @Value("${app.masking.excel.parallel:true}")
+    private boolean parallelSheets;
+
+    // 0 means one worker per available processor
+    @Value("${app.masking.excel.workers:0}")
+    private int workers;
+
+    // Write numeric, date and boolean cells back typed, with their styles, where the masked text allows
+    @Value("${app.masking.excel.typed-cells:false}")
+    private boolean typedCells;
+
+    private ForkJoinPool pool;
+
+    /**
+     * Mask every sheet of an XLSX workbook into a new workbook
+     */
+    public void mask(Path inputPath, Path outputPath, MaskingPlan plan, MaskingProgress progress) throws Exception {
+        try (OPCPackage pkg = OPCPackage.open(inputPath.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            boolean date1904 = isDate1904(reader);
+
+            List<String> sheetNames = new ArrayList<>();
+            List<PackagePart> sheetParts = new ArrayList<>();
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                sheets.next().close();
+                sheetNames.add(sheets.getSheetName());
+                sheetParts.add(sheets.getSheetPart());
+            }
+
+            if (parallelSheets && sheetParts.size() > 1) {
+                maskSheetsInParallel(reader, sharedStrings, date1904, sheetNames, sheetParts, outputPath, plan, progress);
+                return;
+            }
+
+            SXSSFWorkbook outputWorkbook = new SXSSFWorkbook(rowWindow);
+            outputWorkbook.setCompressTempFiles(true);
+            try {
+                StylesTable styles = reader.getStylesTable();
+                StylePool stylePool = typedCells ? new StylePool(styles, outputWorkbook) : null;
+                for (int i = 0; i < sheetParts.size(); i++) {
+                    Sheet outputSheet = outputWorkbook.createSheet(sheetNames.get(i));
+                    try (InputStream sheetStream = sheetParts.get(i).getInputStream()) {
+                        maskSheet(sheetStream, new WorkbookRows(outputSheet, stylePool), styles, sharedStrings,
+                            date1904, plan, progress);
+                    }
+                }
+
+                try (OutputStream outputStream = Files.newOutputStream(outputPath)) {
+                    outputWorkbook.write(outputStream);
+                }
+            } finally {
+                outputWorkbook.dispose();
+                outputWorkbook.close();
+            }
+        }
+    }
+
+    /**
+     * Mask sheets concurrently, each into a temp file of rows, then assemble the workbook.
+     * Each sheet's random source is split from the job's in sheet order, so seeded runs repeat.
+     */
+    private void maskSheetsInParallel(XSSFReader reader, ReadOnlySharedStringsTable sharedStrings, boolean date1904,
+                                      List<String> sheetNames, List<PackagePart> sheetParts, Path outputPath,
+                                      MaskingPlan plan, MaskingProgress progress) throws Exception {
+        long startNanos = System.nanoTime();
+        ForkJoinPool workerPool = getPool();
+        MaskingRandom jobRandom = MaskingRandom.current();
+        List<Path> sheetFiles = new ArrayList<>();
+        List<ForkJoinTask<String>> tasks = new ArrayList<>();
+
+        try (XSSFWorkbook template = new XSSFWorkbook()) {
+            StylePool stylePool = typedCells ? new StylePool(reader.getStylesTable(), template) : null;
+            for (PackagePart sheetPart : sheetParts) {
+                Path sheetFile = Files.createTempFile(outputPath.getParent(), "sheet_", ".xml.gz");
+                sheetFiles.add(sheetFile);
+                // Each worker gets its own styles table; lookups in a shared one would contend
+                StylesTable styles = reader.getStylesTable();
+                MaskingRandom sheetRandom = jobRandom.split();
+                tasks.add(workerPool.submit(() -> maskSheetToFile(sheetPart, sheetFile, styles, stylePool,
+                    sharedStrings, date1904, plan, progress, sheetRandom)));
+            }
+            List<String> dimensions = new ArrayList<>();
+            for (ForkJoinTask<String> task : tasks) {
+                dimensions.add(task.join());
+            }
+            writeWorkbook(template, sheetNames, sheetFiles, dimensions, outputPath);
+        } finally {
+            tasks.forEach(task -> task.cancel(true));
+            for (Path sheetFile : sheetFiles) {
+                Files.deleteIfExists(sheetFile);
+            }
+        }
+
+        System.out.println(String.format("Masked %d sheets in %d ms on %d workers", sheetParts.size(),
+            (System.nanoTime() - startNanos) / 1_000_000, workerPool.getParallelism()));
+    }
+
+    /**
+     * Mask one sheet's rows into a compressed temp file and return the range they cover
+     */
+    private String maskSheetToFile(PackagePart sheetPart, Path sheetFile, StylesTable styles, StylePool stylePool,
+                                   ReadOnlySharedStringsTable sharedStrings, boolean date1904, MaskingPlan plan,
+                                   MaskingProgress progress, MaskingRandom random) throws Exception {
+        MaskingRandom previousRandom = MaskingRandom.install(random);
+        try (InputStream sheetStream = sheetPart.getInputStream();
+             Writer writer = new BufferedWriter(new OutputStreamWriter(
+                 new FastGzipOutputStream(Files.newOutputStream(sheetFile)), StandardCharsets.UTF_8), 1 << 16)) {
+            SheetXmlRows rows = new SheetXmlRows(writer, stylePool);
+            maskSheet(sheetStream, rows, styles, sharedStrings, date1904, plan, progress);
+            return rows.dimension();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            MaskingRandom.install(previousRandom);
+        }
+    }
+
+    /**
+     * Write a workbook with the given sheets, splicing each sheet's rows into the empty template
+     */
+    private static void writeWorkbook(XSSFWorkbook template, List<String> sheetNames, List<Path> sheetFiles,
+                                      List<String> dimensions, Path outputPath) throws IOException {
+        ByteArrayOutputStream templateBytes = new ByteArrayOutputStream();
+        Map<String, Integer> sheetByEntry = new HashMap<>();
+        for (int i = 0; i < sheetNames.size(); i++) {
+            String partName = template.createSheet(sheetNames.get(i)).getPackagePart().getPartName().getName();
+            sheetByEntry.put(partName.substring(1), i);
+        }
+        template.write(templateBytes);
+
+        try (ZipInputStream templateZip = new ZipInputStream(new ByteArrayInputStream(templateBytes.toByteArray()));
+             ZipOutputStream output = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(outputPath)))) {
+            ZipEntry entry;
+            while ((entry = templateZip.getNextEntry()) != null) {
+                output.putNextEntry(new ZipEntry(entry.getName()));
+                Integer sheet = sheetByEntry.get(entry.getName());
+                if (sheet == null) {
+                    templateZip.transferTo(output);
+                } else {
+                    String[] around = splitTemplateSheet(new String(templateZip.readAllBytes(), StandardCharsets.UTF_8),
+                        dimensions.get(sheet), sheetNames.get(sheet));
+                    output.write(around[0].getBytes(StandardCharsets.UTF_8));
+                    output.write("<sheetData>\n".getBytes(StandardCharsets.UTF_8));
+                    try (InputStream rows = new GZIPInputStream(Files.newInputStream(sheetFiles.get(sheet)), 1 << 16)) {
+                        rows.transferTo(output);
+                    }
+                    output.write("</sheetData>".getBytes(StandardCharsets.UTF_8));
+                    output.write(around[1].getBytes(StandardCharsets.UTF_8));
+                }
+                output.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * An empty template sheet's XML before and after its sheetData, with the dimension
+     * filled in when the sheet has rows. Fails when POI writes empty sheets without the
+     * markers the splice relies on, rather than assembling a broken workbook.
+     */
+    static String[] splitTemplateSheet(String sheetXml, String dimension, String sheetName) throws IOException {
+        if (dimension != null) {
+            requireMarker(sheetXml, TEMPLATE_DIMENSION, sheetName);
+            sheetXml = sheetXml.replace(TEMPLATE_DIMENSION, "<dimension ref=\"" + dimension + "\"/>");
+        }
+        int sheetData = requireMarker(sheetXml, EMPTY_SHEET_DATA, sheetName);
+        return new String[] {sheetXml.substring(0, sheetData), sheetXml.substring(sheetData + EMPTY_SHEET_DATA.length())};
+    }
+
+    private static int requireMarker(String sheetXml, String marker, String sheetName) throws IOException {
+        int index = sheetXml.indexOf(marker);
+        if (index < 0) {
+            throw new IOException("Cannot assemble sheet '" + sheetName + "': the empty template sheet has no "
+                + marker + "; set app.masking.excel.parallel=false to mask sheets one at a time");
+        }
+        return index;
+    }
+
+    private void maskSheet(InputStream sheetStream, RowSink rows, StylesTable styles,
+                           ReadOnlySharedStringsTable sharedStrings, boolean date1904, MaskingPlan plan,
+                           MaskingProgress progress) throws Exception {
+        CellState cellState = new CellState();
+        SheetMasker sheetMasker = new SheetMasker(rows, plan, cellState, progress, typedCells, date1904);
+
+        XMLReader xmlReader = XMLHelper.newXMLReader();
+        xmlReader.setContentHandler(new TypeTrackingHandler(styles, sharedStrings, sheetMasker,
+            new CellTextFormatter(cellState, date1904), cellState));
+        xmlReader.parse(new InputSource(sheetStream));
+    }
+
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            int parallelism = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    static boolean isDate1904(XSSFReader reader) throws Exception {
+        try (InputStream workbookXml = reader.getWorkbookData()) {
+            CTWorkbookPr properties = WorkbookDocument.Factory.parse(workbookXml).getWorkbook().getWorkbookPr();
+            return properties != null && properties.isSetDate1904() && properties.getDate1904();
+        }
+    }
+
+    /**
+     * Column index of a cell reference such as "AB12"
+     */
+    static int columnIndexOf(String cellReference) {
+        int column = 0;
+        for (int i = 0; i < cellReference.length(); i++) {
+            char c = cellReference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+
+    /**
+     * Destination of a masked sheet's rows
+     */
+    private interface RowSink {
+        void startRow(int rowNum);
+
+        void cell(int columnIndex, String value);
+
+        // Typed cells carry the index of their style in the input workbook
+        void number(int columnIndex, double value, int inputStyle);
+
+        void bool(int columnIndex, boolean value, int inputStyle);
+
+        void endRow();
+    }
+
+    /**
+     * Output styles cloned from the input workbook's, created once per input style
+     */
+    private static final class StylePool {
+
+        private final StylesTable inputStyles;
+        private final Workbook outputWorkbook;
+        private final Map<Integer, CellStyle> styles = new HashMap<>();
+
+        private StylePool(StylesTable inputStyles, Workbook outputWorkbook) {
+            this.inputStyles = inputStyles;
+            this.outputWorkbook = outputWorkbook;
+        }
+
+        // Sheets masked in parallel share one pool
+        synchronized CellStyle styleFor(int inputStyle) {
+            return styles.computeIfAbsent(inputStyle, index -> {
+                CellStyle style = outputWorkbook.createCellStyle();
+                XSSFCellStyle source = index < inputStyles.getNumCellStyles() ? inputStyles.getStyleAt(index) : null;
+                if (source != null) {
+                    style.cloneStyleFrom(source);
+                }
+                return style;
+            });
+        }
+    }
+
+    /**
+     * Rows of a sheet in the SXSSF output workbook
+     */
+    private static final class WorkbookRows implements RowSink {
+
+        private final Sheet outputSheet;
+        private final StylePool stylePool;
+        private Row outputRow;
+
+        private WorkbookRows(Sheet outputSheet, StylePool stylePool) {
+            this.outputSheet = outputSheet;
+            this.stylePool = stylePool;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            outputRow = outputSheet.createRow(rowNum);
+        }
+
+        @Override
+        public void cell(int columnIndex, String value) {
+            outputRow.createCell(columnIndex).setCellValue(value);
+        }
+
+        @Override
+        public void number(int columnIndex, double value, int inputStyle) {
+            Cell cell = outputRow.createCell(columnIndex);
+            cell.setCellValue(value);
+            cell.setCellStyle(stylePool.styleFor(inputStyle));
+        }
+
+        @Override
+        public void bool(int columnIndex, boolean value, int inputStyle) {
+            Cell cell = outputRow.createCell(columnIndex);
+            cell.setCellValue(value);
+            cell.setCellStyle(stylePool.styleFor(inputStyle));
+        }
+
+        @Override
+        public void endRow() {
+        }
+    }
+
+    /**
+     * Rows written as worksheet XML, with string cells inline the way SXSSF writes them
+     */
+    private static final class SheetXmlRows implements RowSink {
+
+        private final Writer writer;
+        private final StylePool stylePool;
+        private final StringBuilder row = new StringBuilder(1024);
+        private int rowNum;
+        private int firstRow = -1;
+        private int firstColumn = Integer.MAX_VALUE;
+        private int lastColumn = -1;
+
+        private SheetXmlRows(Writer writer, StylePool stylePool) {
+            this.writer = writer;
+            this.stylePool = stylePool;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            this.rowNum = rowNum;
+            if (firstRow < 0) {
+                firstRow = rowNum;
+            }
+            row.append("<row r=\"").append(rowNum + 1).append("\">\n");
+        }
+
+        @Override
+        public void cell(int columnIndex, String value) {
+            startCell(columnIndex, 0);
+            row.append(" t=\"inlineStr\"><is><t");
+            if (!value.isEmpty() && (Character.isWhitespace(value.charAt(0))
+                    || Character.isWhitespace(value.charAt(value.length() - 1)))) {
+                row.append(" xml:space=\"preserve\"");
+            }
+            row.append('>');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '<': row.append("&lt;"); break;
+                    case '>': row.append("&gt;"); break;
+                    case '&': row.append("&amp;"); break;
+                    case '"': row.append("&quot;"); break;
+                    case '\n': row.append("&#xa;"); break;
+                    case '\r': row.append("&#xd;"); break;
+                    case '\t': row.append("&#x9;"); break;
+                    case '\u00A0': row.append("&#xa0;"); break;
+                    default:
+                        // Chars XML can't hold become '?', as SXSSF writes them
+                        row.append(c < ' ' || c >= '\uFFFE' ? '?' : c);
+                }
+            }
+            row.append("</t></is></c>");
+        }
+
+        @Override
+        public void number(int columnIndex, double value, int inputStyle) {
+            startCell(columnIndex, stylePool.styleFor(inputStyle).getIndex());
+            row.append(" t=\"n\"><v>").append(Double.toString(value)).append("</v></c>");
+        }
+
+        @Override
+        public void bool(int columnIndex, boolean value, int inputStyle) {
+            startCell(columnIndex, stylePool.styleFor(inputStyle).getIndex());
+            row.append(" t=\"b\"><v>").append(value ? '1' : '0').append("</v></c>");
+        }
+
+        private void startCell(int columnIndex, int style) {
+            firstColumn = Math.min(firstColumn, columnIndex);
+            lastColumn = Math.max(lastColumn, columnIndex);
+            row.append("<c r=\"").append(CellReference.convertNumToColString(columnIndex)).append(rowNum + 1)
+                .append('"');
+            if (style != 0) {
+                row.append(" s=\"").append(style & 0xFFFF).append('"');
+            }
+        }
+
+        @Override
+        public void endRow() {
+            row.append("</row>\n");
+            try {
+                writer.append(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            row.setLength(0);
+        }
+
+        /**
+         * Range of the rows and columns written, as SXSSF records it, or null when no cell was
+         */
+        String dimension() {
+            return lastColumn < 0 ? null
+                : new CellRangeAddress(firstRow, rowNum, firstColumn, lastColumn).formatAsString();
+        }
+    }
+
+    /**
+     * Gzip at the fastest level; temp files only need to be smaller than the XML
+     */
+    private static final class FastGzipOutputStream extends GZIPOutputStream {
+
+        private FastGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 1 << 16);
+            def.setLevel(Deflater.BEST_SPEED);
+        }
+    }
+
+    /**
+     * Masks one sheet row by row; the first row is the header and is copied unchanged
+     */
+    private static final class SheetMasker implements SheetContentsHandler {
+
+        private final RowSink rows;
+        private final MaskingPlan plan;
+        private final CellState cellState;
+        private final MaskingProgress progress;
+        private final boolean typedCells;
+        private final boolean date1904;
+        private final List<String> headers = new ArrayList<>();
+        private ColumnMasker[] maskers;
+        private int lastColumn;
+
+        private SheetMasker(RowSink rows, MaskingPlan plan, CellState cellState, MaskingProgress progress,
+                            boolean typedCells, boolean date1904) {
+            this.rows = rows;
+            this.plan = plan;
+            this.cellState = cellState;
+            this.progress = progress;
+            this.typedCells = typedCells;
+            this.date1904 = date1904;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            rows.startRow(rowNum);
+            lastColumn = -1;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            rows.endRow();
+            if (maskers == null) {
+                maskers = plan.bind(headers);
+            } else {
+                progress.addRows(1);
+            }
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int columnIndex = cellReference != null ? columnIndexOf(cellReference) : lastColumn + 1;
+            lastColumn = columnIndex;
+            String value = cellState.textFor(formattedValue);
+
+            if (maskers == null) {
+                // Process header row
+                while (headers.size() < columnIndex) {
+                    headers.add("Column" + headers.size());
+                }
+                headers.add(value);
+                rows.cell(columnIndex, value);
+                return;
+            }
+
+            ColumnMasker masker = columnIndex < maskers.length
+                ? maskers[columnIndex] : plan.forColumn("Column" + columnIndex);
+            String maskedValue = masker.mask(value);
+            if (!typedCells || !writeTyped(columnIndex, value, maskedValue)) {
+                rows.cell(columnIndex, maskedValue);
+            }
+        }
+
+        // Numbers, dates and booleans keep their type when the masked text still reads as one
+        private boolean writeTyped(int columnIndex, String value, String maskedValue) {
+            if (cellState.number) {
+                Double number = TypedCells.number(cellState.value, cellState.date, date1904, value, maskedValue);
+                if (number != null) {
+                    rows.number(columnIndex, number, cellState.style);
+                    return true;
+                }
+            } else if ("b".equals(cellState.type) && !cellState.formula) {
+                Boolean bool = TypedCells.bool(maskedValue);
+                if (bool != null) {
+                    rows.bool(columnIndex, bool, cellState.style);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Type of the cell currently being parsed, so values render as the DOM path renders them
+     */
+    static final class CellState {
+        String type;
+        boolean formula;
+        int style;
+        // Set when the cell's value was formatted as a number
+        boolean number;
+        double value;
+        boolean date;
+
+        String textFor(String formattedValue) {
+            if (formattedValue == null || "e".equals(type)) {
+                return "";
+            }
+            if ("b".equals(type)) {
+                return formula ? "" : String.valueOf(!formattedValue.startsWith("F"));
+            }
+            return formattedValue;
+        }
+    }
+
+    /**
+     * Records the type attribute and formula flag of each cell before the POI handler sees it
+     */
+    static final class TypeTrackingHandler extends XSSFSheetXMLHandler {
+
+        private final CellState cellState;
+
+        TypeTrackingHandler(StylesTable styles, ReadOnlySharedStringsTable strings,
+                            SheetContentsHandler handler, DataFormatter formatter, CellState cellState) {
+            super(styles, null, strings, handler, formatter, false);
+            this.cellState = cellState;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("c".equals(localName)) {
+                cellState.type = attributes.getValue("t");
+                cellState.formula = false;
+                cellState.number = false;
+                String style = attributes.getValue("s");
+                cellState.style = style == null ? 0 : Integer.parseInt(style);
+            } else if ("f".equals(localName)) {
+                cellState.formula = true;
+            }
+            super.startElement(uri, localName, qName, attributes);
+        }
+    }
+
+    /**
+     * Formats numbers the way getCellValueAsString does: ISO dates, whole numbers without ".0"
+     */
+    static final class CellTextFormatter extends DataFormatter {
+
+        private final CellState cellState;
+        private final boolean date1904;
+
+        CellTextFormatter(CellState cellState, boolean date1904) {
+            this.cellState = cellState;
+            this.date1904 = date1904;
+        }
+
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            cellState.number = true;
+            cellState.value = value;
+            cellState.date = false;
+            if (cellState.formula) {
+                return String.valueOf(value);
+            }
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                cellState.date = true;
+                return DateUtil.getLocalDateTime(value, date1904).toLocalDate().toString();
+            }
+            if (value == Math.floor(value)) {
+                return String.valueOf((long) value);
+            }
+            return String.valueOf(value);
+        }
+    }
+}
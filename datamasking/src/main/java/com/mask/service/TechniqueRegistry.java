@@ -0,0 +1,85 @@
+package com.mask.service;
+
+import com.mask.util.BuiltInTechnique;
+import com.mask.util.MaskingTechnique;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Masking techniques by name: the built-ins, then any found through ServiceLoader,
+ * then any Spring beans. A later technique with the same name replaces an earlier one.
+ */
+@Service
+public class TechniqueRegistry {
+
+    private static final TechniqueRegistry BUILT_IN = new TechniqueRegistry();
+
+    @Autowired(required = false)
+    private List<MaskingTechnique> techniqueBeans;
+
+    // Filled before first use and only read afterwards
+    private final Map<String, MaskingTechnique> techniques = new LinkedHashMap<>();
+
+    public TechniqueRegistry() {
+        for (BuiltInTechnique technique : BuiltInTechnique.values()) {
+            techniques.put(technique.getName(), technique);
+        }
+    }
+
+    /**
+     * Registry with only the built-in techniques, for callers outside Spring
+     */
+    public static TechniqueRegistry builtIn() {
+        return BUILT_IN;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (MaskingTechnique technique : ServiceLoader.load(MaskingTechnique.class)) {
+            register(technique);
+        }
+        if (techniqueBeans != null) {
+            techniqueBeans.forEach(this::register);
+        }
+    }
+
+    private void register(MaskingTechnique technique) {
+        String name = technique.getName() != null ? technique.getName().trim().toUpperCase() : "";
+        if (name.isEmpty()) {
+            System.err.println("Ignoring masking technique without a name: " + technique.getClass().getName());
+            return;
+        }
+        MaskingTechnique previous = techniques.put(name, technique);
+        if (previous != null && previous != technique) {
+            System.out.println("Masking technique " + name + " provided by " + technique.getClass().getName());
+        }
+    }
+
+    /**
+     * Technique for a name, ignoring case and surrounding spaces. Blank names give null
+     * and unknown names fall back to FULL_MASK.
+     */
+    public MaskingTechnique resolve(String technique) {
+        if (technique == null || technique.trim().isEmpty()) {
+            return null;
+        }
+        MaskingTechnique resolved = techniques.get(technique.trim().toUpperCase());
+        return resolved != null ? resolved : techniques.get(BuiltInTechnique.FULL_MASK.getName());
+    }
+
+    /**
+     * Techniques that can be offered right now, in registration order
+     */
+    public List<MaskingTechnique> getAvailable() {
+        List<MaskingTechnique> available = new ArrayList<>();
+        for (MaskingTechnique technique : techniques.values()) {
+            if (technique.isAvailable()) {
+                available.add(technique);
+            }
+        }
+        return available;
+    }
+}
@@ -0,0 +1,445 @@
+package com.mask.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import com.mask.util.MaskingRandom;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Persistent map from (column domain, original value) to the surrogate it was first
+ * masked to, so separately masked files keep joining on the masked values.
+ * <p>
+ * The table is an open-addressing hash table of 64-byte slots in memory-mapped
+ * segment files, so entries live in the page cache rather than on the heap. Each
+ * slot holds a state word (empty, pending, or surrogate length), a 128-bit key
+ * fingerprint and up to 40 bytes of UTF-8 surrogate. Fingerprints are HMAC-SHA256
+ * under the app.masking.hash.hmac-key secret, so the files can't be used to confirm
+ * guessed values without it.
+ * <p>
+ * The map is one-to-one within a column domain: every stored surrogate also claims a
+ * reverse slot keyed by its own fingerprint, and a surrogate another value already
+ * holds is generated again. Generators with small pools (random names) that keep
+ * colliding get a random suffix instead. Reads never lock: a slot is
+ * published by a release store of its state after the rest is written. Writers
+ * for the same key serialize on a lock stripe and claim free slots by CAS.
+ * Callers work on a snapshot of the mapped segments and count themselves in a
+ * per-thread stripe of counters, which close() drains before unmapping.
+ */
+@Service
+public class TokenVault {
+
+    private static final int SLOT_SIZE = 64;
+    private static final int STATE = 0;
+    private static final int FINGERPRINT_HIGH = 8;
+    private static final int FINGERPRINT_LOW = 16;
+    private static final int SURROGATE = 24;
+    static final int MAX_SURROGATE_BYTES = SLOT_SIZE - SURROGATE;
+
+    private static final long EMPTY = 0;
+    private static final long PENDING = -1;
+    // State of a reverse slot, which marks a surrogate as taken
+    private static final long RESERVED = -2;
+
+    // 2^24 slots of 64 bytes = 1 GB, the most one mapping can hold
+    private static final int MAX_SEGMENT_SLOT_BITS = 24;
+    // 2^32 slots is 256 segment mappings and 256 GB of files, well inside vm.max_map_count
+    private static final int MIN_CAPACITY_BITS = 10;
+    private static final int MAX_CAPACITY_BITS = 32;
+    private static final int MAX_PROBES = 4096;
+    // Version 2 keys fingerprints with the HMAC secret
+    private static final int FORMAT_VERSION = 2;
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String KEY_CHECK_LABEL = "token-vault-key-check";
+
+    // Fresh surrogates tried before falling back to suffixed ones
+    private static final int REGENERATE_ATTEMPTS = 16;
+    private static final int MAX_ATTEMPTS = 32;
+    // Five base-36 digits
+    private static final int SUFFIX_BOUND = 36 * 36 * 36 * 36 * 36;
+    private static final int COUNTER_SPACING = 16;
+
+    private static final VarHandle LONGS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    @Value("${app.masking.vault.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.masking.vault.dir:./vault}")
+    private String vaultDir;
+
+    // Table size as a power of two; 2^27 slots is 8 GB of sparse files for ~50M values (a value slot and a surrogate slot each)
+    @Value("${app.masking.vault.capacity-bits:24}")
+    private int capacityBits;
+
+    @Value("${app.masking.vault.lock-stripes:64}")
+    private int lockStripes;
+
+    // Same secret as HMAC_MASK; a vault can't be opened without it
+    @Value("${app.masking.hash.hmac-key:}")
+    private String hmacKey;
+
+    private SecretKeySpec fingerprintKey;
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    // Null until opened and after closing; callers read it once and use that snapshot throughout
+    private volatile MappedByteBuffer[] segments;
+    private FileChannel[] channels;
+    private int segmentSlotBits;
+    private long slotMask;
+    private Object[] locks;
+    // Separate from the value locks, which are held while these are taken
+    private Object[] surrogateLocks;
+    private final Set<String> suffixedDomains = ConcurrentHashMap.newKeySet();
+    private final LongAdder inserted = new LongAdder();
+    private volatile boolean fullReported;
+    // Calls inside tokenize per stripe, COUNTER_SPACING longs apart to keep stripes off each other's cache lines
+    private AtomicLongArray inFlight;
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (hmacKey == null || hmacKey.isBlank()) {
+            throw new IllegalStateException("app.masking.vault.enabled requires app.masking.hash.hmac-key to be set");
+        }
+        fingerprintKey = new SecretKeySpec(hmacKey.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        Path dir = Paths.get(vaultDir).toAbsolutePath().normalize();
+        Files.createDirectories(dir);
+        capacityBits = readOrWriteMeta(dir.resolve("vault.meta"));
+
+        segmentSlotBits = Math.min(capacityBits, MAX_SEGMENT_SLOT_BITS);
+        slotMask = (1L << capacityBits) - 1;
+        int segmentCount = 1 << (capacityBits - segmentSlotBits);
+        long segmentBytes = (1L << segmentSlotBits) * SLOT_SIZE;
+
+        MappedByteBuffer[] mapped = new MappedByteBuffer[segmentCount];
+        channels = new FileChannel[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            Path file = dir.resolve(String.format("vault-%03d.seg", i));
+            channels[i] = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            mapped[i] = channels[i].map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        }
+
+        int stripes = Integer.highestOneBit(Math.max(1, lockStripes));
+        locks = new Object[stripes];
+        surrogateLocks = new Object[stripes];
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new Object();
+            surrogateLocks[i] = new Object();
+        }
+        inFlight = new AtomicLongArray(stripes * COUNTER_SPACING);
+        // Published last, so a caller that sees the segments sees everything above
+        segments = mapped;
+        System.out.println("Token vault opened at " + dir + " with " + (1L << capacityBits) + " slots");
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        MappedByteBuffer[] open = segments;
+        if (open == null) {
+            return;
+        }
+        // New callers now fall back to the generator; wait for those that took the snapshot
+        segments = null;
+        for (int i = 0; i < inFlight.length(); i += COUNTER_SPACING) {
+            while (inFlight.get(i) != 0) {
+                Thread.yield();
+            }
+        }
+        for (int i = 0; i < open.length; i++) {
+            open[i].force();
+            channels[i].close();
+        }
+        System.out.println("Token vault closed, " + inserted.sum() + " entries added");
+    }
+
+    public boolean isEnabled() {
+        return segments != null;
+    }
+
+    /**
+     * Vault key for a column: the trimmed, lower-cased header, so "Email" in one file
+     * and "email" in another share surrogates
+     */
+    public static String domainOf(String columnName) {
+        return columnName != null ? columnName.trim().toLowerCase() : "";
+    }
+
+    /**
+     * Surrogate stored for a value, generating and storing one on first sight. A new
+     * surrogate is never one another value of the domain already has. Surrogates longer
+     * than a slot holds, or arriving when the table is full or closed, are returned
+     * without being stored.
+     */
+    public String tokenize(String domain, String value, UnaryOperator<String> generator) {
+        AtomicLongArray counters = inFlight;
+        if (counters == null) {
+            return generator.apply(value);
+        }
+        // Counted before reading the snapshot, so close() either sees this call or this call sees null
+        int counter = ((int) Thread.currentThread().getId() & (locks.length - 1)) * COUNTER_SPACING;
+        counters.incrementAndGet(counter);
+        try {
+            MappedByteBuffer[] open = segments;
+            if (open == null) {
+                return generator.apply(value);
+            }
+            return tokenizeOpen(open, domain, value, generator);
+        } finally {
+            counters.decrementAndGet(counter);
+        }
+    }
+
+    private String tokenizeOpen(MappedByteBuffer[] open, String domain, String value,
+                                UnaryOperator<String> generator) {
+        byte[] hash = fingerprint(domain, (byte) 0, value.trim());
+        long high = toLong(hash, 0);
+        long low = toLong(hash, 8);
+
+        String surrogate = lookup(open, high, low);
+        if (surrogate != null) {
+            return surrogate;
+        }
+
+        synchronized (locks[(int) high & (locks.length - 1)]) {
+            // Another worker may have stored this key while we waited
+            surrogate = lookup(open, high, low);
+            if (surrogate != null) {
+                return surrogate;
+            }
+            for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+                surrogate = generator.apply(value);
+                if (attempt >= REGENERATE_ATTEMPTS) {
+                    surrogate = withSuffix(domain, surrogate);
+                }
+                byte[] encoded = surrogate.getBytes(StandardCharsets.UTF_8);
+                if (encoded.length == 0 || encoded.length > MAX_SURROGATE_BYTES) {
+                    return surrogate;
+                }
+                if (claimSurrogate(open, domain, surrogate)) {
+                    insert(open, high, low, encoded);
+                    return surrogate;
+                }
+            }
+            reportFull(low);
+            return surrogate;
+        }
+    }
+
+    /**
+     * Mark a surrogate as taken in its domain, or return false when another value holds it
+     */
+    private boolean claimSurrogate(MappedByteBuffer[] open, String domain, String surrogate) {
+        byte[] hash = fingerprint(domain, (byte) 1, surrogate);
+        long high = toLong(hash, 0);
+        long low = toLong(hash, 8);
+
+        // Claims of one surrogate serialize here, so no two can both find it free
+        synchronized (surrogateLocks[(int) high & (surrogateLocks.length - 1)]) {
+            long index = low & slotMask;
+            for (int probe = 0; probe < MAX_PROBES; probe++, index = (index + 1) & slotMask) {
+                MappedByteBuffer segment = open[(int) (index >>> segmentSlotBits)];
+                int offset = slotOffset(index);
+                long state = (long) LONGS.getAcquire(segment, offset + STATE);
+                if (state == RESERVED
+                        && (long) LONGS.get(segment, offset + FINGERPRINT_HIGH) == high
+                        && (long) LONGS.get(segment, offset + FINGERPRINT_LOW) == low) {
+                    return false;
+                }
+                if (state == EMPTY && LONGS.compareAndSet(segment, offset + STATE, EMPTY, PENDING)) {
+                    LONGS.set(segment, offset + FINGERPRINT_HIGH, high);
+                    LONGS.set(segment, offset + FINGERPRINT_LOW, low);
+                    LONGS.setRelease(segment, offset + STATE, RESERVED);
+                    return true;
+                }
+            }
+        }
+        // Table is full; the value itself can't be stored either
+        return true;
+    }
+
+    private String withSuffix(String domain, String surrogate) {
+        if (suffixedDomains.add(domain)) {
+            System.err.println("Token vault ran out of distinct surrogates for column '" + domain
+                + "'; new ones get a random suffix. A technique with more possible outputs avoids this.");
+        }
+        String suffix = Integer.toString(MaskingRandom.current().nextInt(SUFFIX_BOUND), 36);
+        suffix = "-" + "0000".substring(suffix.length() - 1) + suffix;
+        // Keep email surrogates well-formed by suffixing the local part
+        int at = surrogate.indexOf('@');
+        return at > 0 ? surrogate.substring(0, at) + suffix + surrogate.substring(at) : surrogate + suffix;
+    }
+
+    private byte[] fingerprint(String domain, byte kind, String text) {
+        Mac mac = macs.get();
+        mac.update(domain.getBytes(StandardCharsets.UTF_8));
+        mac.update(kind);
+        return mac.doFinal(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String lookup(MappedByteBuffer[] open, long high, long low) {
+        long index = low & slotMask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, index = (index + 1) & slotMask) {
+            MappedByteBuffer segment = open[(int) (index >>> segmentSlotBits)];
+            int offset = slotOffset(index);
+            long state = (long) LONGS.getAcquire(segment, offset + STATE);
+            if (state == EMPTY) {
+                return null;
+            }
+            if (state > 0
+                    && (long) LONGS.get(segment, offset + FINGERPRINT_HIGH) == high
+                    && (long) LONGS.get(segment, offset + FINGERPRINT_LOW) == low) {
+                byte[] encoded = new byte[(int) state];
+                segment.get(offset + SURROGATE, encoded, 0, encoded.length);
+                return new String(encoded, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private void insert(MappedByteBuffer[] open, long high, long low, byte[] encoded) {
+        long index = low & slotMask;
+        for (int probe = 0; probe < MAX_PROBES; probe++, index = (index + 1) & slotMask) {
+            MappedByteBuffer segment = open[(int) (index >>> segmentSlotBits)];
+            int offset = slotOffset(index);
+            if ((long) LONGS.getAcquire(segment, offset + STATE) == EMPTY
+                    && LONGS.compareAndSet(segment, offset + STATE, EMPTY, PENDING)) {
+                LONGS.set(segment, offset + FINGERPRINT_HIGH, high);
+                LONGS.set(segment, offset + FINGERPRINT_LOW, low);
+                segment.put(offset + SURROGATE, encoded, 0, encoded.length);
+                LONGS.setRelease(segment, offset + STATE, (long) encoded.length);
+                inserted.increment();
+                return;
+            }
+        }
+        reportFull(low);
+    }
+
+    private void reportFull(long low) {
+        if (!fullReported) {
+            fullReported = true;
+            System.err.println("Token vault is full around slot " + (low & slotMask)
+                + "; new values are masked without being stored. Raise app.masking.vault.capacity-bits.");
+        }
+    }
+
+    private int slotOffset(long index) {
+        return (int) (index & ((1L << segmentSlotBits) - 1)) * SLOT_SIZE;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(fingerprintKey);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Short HMAC of a fixed label, stored in the meta file to catch a changed secret
+     */
+    private String keyCheck() {
+        byte[] hash = macs.get().doFinal(KEY_CHECK_LABEL.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(toLong(hash, 0));
+    }
+
+    /**
+     * Capacity of an existing vault wins over configuration, since slots can't be rehashed in place
+     */
+    private int readOrWriteMeta(Path metaFile) throws IOException {
+        Properties meta = new Properties();
+        if (Files.exists(metaFile)) {
+            try (Reader reader = Files.newBufferedReader(metaFile, StandardCharsets.UTF_8)) {
+                meta.load(reader);
+            }
+            int version = parseMeta(meta, "version", metaFile);
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported token vault format " + version + " in " + metaFile
+                    + "; vaults from before keyed fingerprints must be recreated");
+            }
+            if (!keyCheck().equals(meta.getProperty("keyCheck"))) {
+                // Every lookup would miss and values would silently get new surrogates
+                throw new IOException("Token vault in " + metaFile.getParent()
+                    + " was created with a different app.masking.hash.hmac-key");
+            }
+            int storedBits = parseMeta(meta, "capacityBits", metaFile);
+            validateCapacity(storedBits, "capacityBits in " + metaFile);
+            if (parseMeta(meta, "slotSize", metaFile) != SLOT_SIZE) {
+                throw new IOException("Unsupported token vault slot size in " + metaFile);
+            }
+            if (storedBits != capacityBits) {
+                System.err.println("Token vault keeps its existing capacity of 2^" + storedBits
+                    + " slots; app.masking.vault.capacity-bits=" + capacityBits + " is ignored");
+            }
+            return storedBits;
+        }
+
+        validateCapacity(capacityBits, "app.masking.vault.capacity-bits");
+        // Segments are sparse, but a write to a mapped page the disk can't back kills the JVM
+        long tableBytes = (1L << capacityBits) * SLOT_SIZE;
+        long usableBytes = Files.getFileStore(metaFile.getParent()).getUsableSpace();
+        if (tableBytes > usableBytes) {
+            throw new IOException("Token vault of 2^" + capacityBits + " slots needs " + (tableBytes >> 20)
+                + " MB but only " + (usableBytes >> 20) + " MB are free in " + metaFile.getParent());
+        }
+        meta.setProperty("version", String.valueOf(FORMAT_VERSION));
+        meta.setProperty("capacityBits", String.valueOf(capacityBits));
+        meta.setProperty("slotSize", String.valueOf(SLOT_SIZE));
+        meta.setProperty("keyCheck", keyCheck());
+        try (Writer writer = Files.newBufferedWriter(metaFile, StandardCharsets.UTF_8)) {
+            meta.store(writer, "Token vault layout, do not edit");
+        }
+        return capacityBits;
+    }
+
+    private static void validateCapacity(int bits, String source) throws IOException {
+        if (bits < MIN_CAPACITY_BITS || bits > MAX_CAPACITY_BITS) {
+            throw new IOException(source + " must be between " + MIN_CAPACITY_BITS + " and " + MAX_CAPACITY_BITS
+                + ", was " + bits);
+        }
+    }
+
+    private static int parseMeta(Properties meta, String key, Path metaFile) throws IOException {
+        try {
+            return Integer.parseInt(meta.getProperty(key, ""));
+        } catch (NumberFormatException e) {
+            throw new IOException("Missing or invalid " + key + " in " + metaFile);
+        }
+    }
+
+    private static long toLong(byte[] bytes, int from) {
+        long value = 0;
+        for (int i = from; i < from + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
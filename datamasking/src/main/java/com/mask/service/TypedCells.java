@@ -0,0 +1,69 @@
+package com.mask.service;
+
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Decides how a data cell is written back when Excel output keeps cell types. A cell whose
+ * text the masker left unchanged keeps its original value; masked text that still reads as
+ * the cell's type (a number, an ISO date, true or false) is converted back to it.
+ */
+final class TypedCells {
+
+    private TypedCells() {
+    }
+
+    /**
+     * Number to write for a numeric or date cell, or null when the masked text is written as text.
+     * Output workbooks use the 1900 date system, so dates read with 1904 windowing are moved.
+     */
+    static Double number(double original, boolean date, boolean date1904, String originalText, String maskedText) {
+        if (maskedText.equals(originalText)) {
+            return date && date1904 ? DateUtil.getExcelDate(DateUtil.getLocalDateTime(original, true)) : original;
+        }
+        if (date) {
+            try {
+                double excelDate = DateUtil.getExcelDate(LocalDate.parse(maskedText));
+                // Dates before 1900 have no serial number
+                return excelDate < 0 ? null : excelDate;
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+        return parseNumber(maskedText);
+    }
+
+    /**
+     * Boolean to write for a boolean cell, or null when the masked text is written as text
+     */
+    static Boolean bool(String maskedText) {
+        if ("true".equals(maskedText)) {
+            return Boolean.TRUE;
+        }
+        if ("false".equals(maskedText)) {
+            return Boolean.FALSE;
+        }
+        return null;
+    }
+
+    // Plain decimal notation only; Double.parseDouble would also take "NaN", "1d" or " 1"
+    private static Double parseNumber(String text) {
+        if (text.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c < '0' || c > '9') && c != '.' && c != '-' && c != '+' && c != 'e' && c != 'E') {
+                return null;
+            }
+        }
+        try {
+            double value = Double.parseDouble(text);
+            return Double.isFinite(value) ? value : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.mask.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.MalformedInputException;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer of UTF-8 output. Raw input slices are copied in as bytes and
+ * chars appended through Appendable are encoded on the way in; an unpaired surrogate
+ * fails with MalformedInputException like the UTF-8 file writer does.
+ */
+final class Utf8Output implements Appendable {
+
+    private byte[] bytes;
+    private int size;
+    // High surrogate waiting for its low half
+    private char pendingHigh;
+
+    Utf8Output(int capacity) {
+        bytes = new byte[Math.max(64, capacity)];
+    }
+
+    void write(byte[] source, int offset, int length) throws IOException {
+        checkPending();
+        ensureCapacity(length);
+        System.arraycopy(source, offset, bytes, size, length);
+        size += length;
+    }
+
+    void write(byte b) throws IOException {
+        checkPending();
+        ensureCapacity(1);
+        bytes[size++] = b;
+    }
+
+    @Override
+    public Utf8Output append(char c) throws IOException {
+        if (c < 0x80 && pendingHigh == 0) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) c;
+        } else {
+            encode(c);
+        }
+        return this;
+    }
+
+    @Override
+    public Utf8Output append(CharSequence value) throws IOException {
+        return value == null ? append("null") : append(value, 0, value.length());
+    }
+
+    @Override
+    public Utf8Output append(CharSequence value, int start, int end) throws IOException {
+        if (value == null) {
+            return append("null", start, end);
+        }
+        ensureCapacity(end - start);
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80 && pendingHigh == 0) {
+                if (size == bytes.length) {
+                    ensureCapacity(1);
+                }
+                bytes[size++] = (byte) c;
+            } else {
+                encode(c);
+            }
+        }
+        return this;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+        checkPending();
+        out.write(bytes, 0, size);
+    }
+
+    private void encode(char c) throws IOException {
+        if (pendingHigh != 0) {
+            char high = pendingHigh;
+            pendingHigh = 0;
+            if (!Character.isLowSurrogate(c)) {
+                throw new MalformedInputException(1);
+            }
+            int codePoint = Character.toCodePoint(high, c);
+            ensureCapacity(4);
+            bytes[size++] = (byte) (0xF0 | (codePoint >> 18));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            bytes[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (codePoint & 0x3F));
+            return;
+        }
+        ensureCapacity(3);
+        if (c < 0x80) {
+            bytes[size++] = (byte) c;
+        } else if (c < 0x800) {
+            bytes[size++] = (byte) (0xC0 | (c >> 6));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            pendingHigh = c;
+        } else if (Character.isLowSurrogate(c)) {
+            throw new MalformedInputException(1);
+        } else {
+            bytes[size++] = (byte) (0xE0 | (c >> 12));
+            bytes[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            bytes[size++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    private void checkPending() throws IOException {
+        if (pendingHigh != 0) {
+            pendingHigh = 0;
+            throw new MalformedInputException(1);
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(size + extra, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.mask.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded map from original to masked value for one column. Keys are spread over
+ * stripes that each keep their own LRU order under their own lock, so parallel
+ * workers rarely wait on each other.
+ */
+final class ValueCache {
+
+    private static final int MAX_STRIPES = 16;
+
+    private final Stripe[] stripes;
+
+    ValueCache(int capacity) {
+        int stripeCount = Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(1, capacity)));
+        stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(Math.max(1, capacity / stripeCount));
+        }
+    }
+
+    String get(String key) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    void put(String key, String value) {
+        Stripe stripe = stripeFor(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    private Stripe stripeFor(String key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * One LRU-ordered share of the entries, evicting the least recently used past its size
+     */
+    private static final class Stripe {
+        private final Map<String, String> entries;
+
+        private Stripe(int maxEntries) {
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    return size() > maxEntries;
+                }
+            };
+        }
+
+        String get(String key) {
+            return entries.get(key);
+        }
+
+        void put(String key, String value) {
+            entries.put(key, value);
+        }
+    }
+}
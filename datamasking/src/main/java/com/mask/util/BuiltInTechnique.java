@@ -0,0 +1,148 @@
+package com.mask.util;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Techniques that ship with the application, in the order they are offered
+ */
+public enum BuiltInTechnique implements MaskingTechnique {
+
+    FULL_MASK("Full Mask", "Full Mask - Replace all characters with asterisks (*)") {
+        @Override
+        public UnaryOperator<String> compile(String columnName) {
+            return MaskingUtils::fullMask;
+        }
+
+        @Override
+        public ValueWriter compileWriter(String columnName) {
+            return MaskingUtils::fullMask;
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return true;
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return false;
+        }
+
+        @Override
+        public boolean isLengthPreserving() {
+            return true;
+        }
+
+        @Override
+        public boolean isAllocationFree() {
+            return true;
+        }
+    },
+
+    PARTIAL_MASK("Partial Mask", "Partial Mask - Show first/last characters, mask middle") {
+        @Override
+        public UnaryOperator<String> compile(String columnName) {
+            return MaskingUtils::partialMask;
+        }
+
+        @Override
+        public ValueWriter compileWriter(String columnName) {
+            return MaskingUtils::partialMask;
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return true;
+        }
+
+        @Override
+        public boolean isCacheable() {
+            return false;
+        }
+
+        @Override
+        public boolean isAllocationFree() {
+            return true;
+        }
+    },
+
+    RANDOM_REPLACE("Random Replace", "Random Replace - Generate realistic fake data") {
+        @Override
+        public UnaryOperator<String> compile(String columnName) {
+            String lowerHint = columnName != null ? columnName.toLowerCase() : "";
+            return value -> MaskingUtils.randomReplaceWithLowerHint(value, lowerHint);
+        }
+    },
+
+    HASH_MASK("Hash Mask", "Hash Mask - Create irreversible SHA-256 hash") {
+        @Override
+        public UnaryOperator<String> compile(String columnName) {
+            return MaskingUtils::hashMask;
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return true;
+        }
+    },
+
+    HMAC_MASK("HMAC Mask", "HMAC Mask - Keyed SHA-256 hash using the server secret") {
+        @Override
+        public UnaryOperator<String> compile(String columnName) {
+            MaskingUtils.requireHmacKey();
+            return MaskingUtils::hmacMask;
+        }
+
+        @Override
+        public boolean isDeterministic() {
+            return true;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return MaskingUtils.isHmacConfigured();
+        }
+    },
+
+    DATE_SHIFT("Date Shift", "Date Shift - Shift dates by random days (±180 days)") {
+        @Override
+        public UnaryOperator<String> compile(String columnName) {
+            // Learns the column's date layout, so one instance per column
+            return new DateShifter();
+        }
+    };
+
+    private final String label;
+    private final String description;
+
+    BuiltInTechnique(String label, String description) {
+        this.label = label;
+        this.description = description;
+    }
+
+    @Override
+    public String getName() {
+        return name();
+    }
+
+    @Override
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Built-in technique by name, ignoring case and surrounding spaces; unknown names get FULL_MASK
+     */
+    public static BuiltInTechnique forName(String technique) {
+        try {
+            return valueOf(technique.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return FULL_MASK;
+        }
+    }
+}
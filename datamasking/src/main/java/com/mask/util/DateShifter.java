@@ -0,0 +1,188 @@
+package com.mask.util;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.function.UnaryOperator;
+
+/**
+ * DATE_SHIFT for one column. The column's layout is taken from the first date it
+ * sees; values in that layout are parsed and formatted by fixed digit positions,
+ * anything else goes through the cached formatters.
+ */
+public final class DateShifter implements UnaryOperator<String> {
+
+    static final DateTimeFormatter ISO_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    static final DateTimeFormatter SLASH_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    static final DateTimeFormatter DASH_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    // Shift by ±180 days to maintain seasonal context
+    private static final int MAX_SHIFT_DAYS = 180;
+
+    // Layout seen first in this column; written once, a race only repeats the detection
+    private volatile int columnLayout = PiiClassifier.DATE_NONE;
+
+    @Override
+    public String apply(String input) {
+        if (input == null) {
+            return null;
+        }
+        int start = 0;
+        int end = input.length();
+        while (start < end && input.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return input;
+        }
+
+        int layout = columnLayout;
+        if (layout == PiiClassifier.DATE_NONE || !matchesLayout(input, start, end, layout)) {
+            layout = PiiClassifier.dateFormat(input, start, end);
+            if (layout == PiiClassifier.DATE_NONE) {
+                return input.substring(start, end);
+            }
+            if (columnLayout == PiiClassifier.DATE_NONE) {
+                columnLayout = layout;
+            }
+        }
+        return shift(input, start, end, layout);
+    }
+
+    /**
+     * Shift a value in any supported layout, for callers without a column
+     */
+    public static String shiftAnyLayout(String input) {
+        if (input == null || input.trim().isEmpty()) {
+            return input;
+        }
+        String trimmedInput = input.trim();
+        int layout = PiiClassifier.dateFormat(trimmedInput, 0, trimmedInput.length());
+        if (layout == PiiClassifier.DATE_NONE) {
+            return trimmedInput;
+        }
+        return shift(trimmedInput, 0, trimmedInput.length(), layout);
+    }
+
+    static DateTimeFormatter formatterFor(int layout) {
+        switch (layout) {
+            case PiiClassifier.DATE_SLASH:
+                return SLASH_FORMAT;
+            case PiiClassifier.DATE_DASH:
+                return DASH_FORMAT;
+            default:
+                return ISO_FORMAT;
+        }
+    }
+
+    /**
+     * Format a date in a layout by digit positions; years outside 1-9999 use the formatter
+     */
+    static String format(LocalDate date, int layout) {
+        int year = date.getYear();
+        if (year < 1 || year > 9999) {
+            return date.format(formatterFor(layout));
+        }
+        char[] out = new char[10];
+        if (layout == PiiClassifier.DATE_ISO) {
+            putDigits(out, 0, year, 4);
+            out[4] = '-';
+            putDigits(out, 5, date.getMonthValue(), 2);
+            out[7] = '-';
+            putDigits(out, 8, date.getDayOfMonth(), 2);
+        } else {
+            char separator = layout == PiiClassifier.DATE_SLASH ? '/' : '-';
+            putDigits(out, 0, date.getDayOfMonth(), 2);
+            out[2] = separator;
+            putDigits(out, 3, date.getMonthValue(), 2);
+            out[5] = separator;
+            putDigits(out, 6, year, 4);
+        }
+        return new String(out);
+    }
+
+    private static String shift(String input, int start, int end, int layout) {
+        LocalDate date = parse(input, start, layout);
+        if (date == null) {
+            // Outside what the fixed-position parser handles; let the formatter decide
+            String trimmedInput = input.substring(start, end);
+            try {
+                date = LocalDate.parse(trimmedInput, formatterFor(layout));
+            } catch (DateTimeParseException e) {
+                // If parsing fails, return original
+                return trimmedInput;
+            }
+        }
+        int shiftDays = MaskingRandom.current().nextInt(2 * MAX_SHIFT_DAYS + 1) - MAX_SHIFT_DAYS;
+        return format(date.plusDays(shiftDays), layout);
+    }
+
+    /**
+     * Parse by digit positions, resolving like the SMART formatters: a day past the end
+     * of its month is moved back to the last day. Null when the formatter must decide.
+     */
+    private static LocalDate parse(String input, int start, int layout) {
+        int year;
+        int month;
+        int day;
+        if (layout == PiiClassifier.DATE_ISO) {
+            year = digits(input, start, 4);
+            month = digits(input, start + 5, 2);
+            day = digits(input, start + 8, 2);
+        } else {
+            day = digits(input, start, 2);
+            month = digits(input, start + 3, 2);
+            year = digits(input, start + 6, 4);
+        }
+        if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+        int monthLength = month == 2 ? (isLeap(year) ? 29 : 28)
+            : month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+        return LocalDate.of(year, month, Math.min(day, monthLength));
+    }
+
+    private static boolean matchesLayout(String input, int start, int end, int layout) {
+        if (end - start != 10) {
+            return false;
+        }
+        if (layout == PiiClassifier.DATE_ISO) {
+            return input.charAt(start + 4) == '-' && input.charAt(start + 7) == '-'
+                && allDigits(input, start, 4) && allDigits(input, start + 5, 2) && allDigits(input, start + 8, 2);
+        }
+        char separator = layout == PiiClassifier.DATE_SLASH ? '/' : '-';
+        return input.charAt(start + 2) == separator && input.charAt(start + 5) == separator
+            && allDigits(input, start, 2) && allDigits(input, start + 3, 2) && allDigits(input, start + 6, 4);
+    }
+
+    private static boolean allDigits(String input, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            if (!PiiClassifier.isDigit(input.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digits(String input, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            value = value * 10 + (input.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static void putDigits(char[] out, int at, int value, int count) {
+        for (int i = at + count - 1; i >= at; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+}
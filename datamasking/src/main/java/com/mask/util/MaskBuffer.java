@@ -0,0 +1,115 @@
+package com.mask.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Growable char buffer that masked values are written into and then copied out by
+ * the file writers, so no String is built per value. One per worker thread; reset
+ * before each value.
+ */
+public final class MaskBuffer implements Appendable, CharSequence {
+
+    private char[] chars;
+    private int length;
+
+    public MaskBuffer() {
+        this(128);
+    }
+
+    public MaskBuffer(int capacity) {
+        chars = new char[Math.max(16, capacity)];
+    }
+
+    public MaskBuffer reset() {
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Drop everything written after the given length, e.g. a value that failed half way
+     */
+    public void truncate(int newLength) {
+        if (newLength < length) {
+            length = Math.max(0, newLength);
+        }
+    }
+
+    @Override
+    public MaskBuffer append(char c) {
+        ensureCapacity(1);
+        chars[length++] = c;
+        return this;
+    }
+
+    @Override
+    public MaskBuffer append(CharSequence value) {
+        return value == null ? append("null") : append(value, 0, value.length());
+    }
+
+    @Override
+    public MaskBuffer append(CharSequence value, int start, int end) {
+        if (value == null) {
+            return append("null", start, end);
+        }
+        int count = end - start;
+        ensureCapacity(count);
+        if (value instanceof String) {
+            ((String) value).getChars(start, end, chars, length);
+        } else {
+            for (int i = start; i < end; i++) {
+                chars[length + i - start] = value.charAt(i);
+            }
+        }
+        length += count;
+        return this;
+    }
+
+    /**
+     * Append a char count times
+     */
+    public MaskBuffer repeat(char c, int count) {
+        if (count > 0) {
+            ensureCapacity(count);
+            Arrays.fill(chars, length, length + count, c);
+            length += count;
+        }
+        return this;
+    }
+
+    public void writeTo(Writer out) throws IOException {
+        out.write(chars, 0, length);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+        return new String(chars, start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(chars, 0, length);
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(length + extra, chars.length * 2));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mask.util;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Random source for the random masking techniques. Each thread masks with its own
+ * instance, so workers never contend; a job installs one built from its seed and
+ * hands splits of it to workers in a fixed order, so reruns are reproducible.
+ */
+public final class MaskingRandom {
+
+    private static final ThreadLocal<MaskingRandom> CURRENT = ThreadLocal.withInitial(MaskingRandom::unseeded);
+
+    private final SplittableRandom random;
+    // Date that generated dates are relative to; null means today
+    private final LocalDate anchorDate;
+    // Job seed, shared by every split so derived sources don't depend on split order
+    private final long jobSeed;
+
+    private MaskingRandom(SplittableRandom random, LocalDate anchorDate, long jobSeed) {
+        this.random = random;
+        this.anchorDate = anchorDate;
+        this.jobSeed = jobSeed;
+    }
+
+    /**
+     * Reproducible source for a job
+     */
+    public static MaskingRandom seeded(long seed, LocalDate anchorDate) {
+        return new MaskingRandom(new SplittableRandom(seed), anchorDate, seed);
+    }
+
+    /**
+     * Source for work where reproducibility doesn't matter
+     */
+    public static MaskingRandom unseeded() {
+        return seeded(newSeed(), null);
+    }
+
+    /**
+     * New seed for a job, recorded so the job can be rerun with identical output
+     */
+    public static long newSeed() {
+        return new SplittableRandom().nextLong();
+    }
+
+    /**
+     * Random source of the calling thread
+     */
+    public static MaskingRandom current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Make a source current for the calling thread, returning the one it replaces
+     */
+    public static MaskingRandom install(MaskingRandom source) {
+        MaskingRandom previous = CURRENT.get();
+        CURRENT.set(source);
+        return previous;
+    }
+
+    /**
+     * Independent child source; splits taken in the same order always see the same values
+     */
+    public MaskingRandom split() {
+        return new MaskingRandom(random.split(), anchorDate, jobSeed);
+    }
+
+    /**
+     * Source that depends only on the job seed, a column key and a value, so the same
+     * value always draws the same numbers wherever and whenever it is masked in the job
+     */
+    public MaskingRandom derive(long columnKey, String value) {
+        long seed = jobSeed ^ (columnKey * 0x9E3779B97F4A7C15L) ^ fnv1a(value);
+        return new MaskingRandom(new SplittableRandom(seed), anchorDate, jobSeed);
+    }
+
+    /**
+     * Stable key for a column name, for derive
+     */
+    public static long columnKey(String columnName) {
+        return fnv1a(columnName != null ? columnName : "");
+    }
+
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    public LocalDate today() {
+        return anchorDate != null ? anchorDate : LocalDate.now();
+    }
+
+    private static long fnv1a(String text) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,91 @@
+package com.mask.util;
+
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+
+/**
+ * A masking technique users can pick for a column. Besides the built-ins, techniques
+ * are picked up as Spring beans or through ServiceLoader
+ * (META-INF/services/com.mask.util.MaskingTechnique).
+ * <p>
+ * A technique is compiled once per column of a job. The compiled function is called
+ * from several threads at once and must not keep per-value state; random techniques
+ * draw from MaskingRandom.current() so job seeds and the value cache keep working.
+ * The properties below let the engine skip work it would otherwise do for every value.
+ */
+public interface MaskingTechnique {
+
+    /**
+     * Compiled form that appends the masked value to a buffer instead of returning it
+     */
+    @FunctionalInterface
+    interface ValueWriter {
+        void write(String value, MaskBuffer out) throws IOException;
+    }
+
+    /**
+     * Name sent by the upload form and stored with the job, e.g. FULL_MASK
+     */
+    String getName();
+
+    /**
+     * Short name for technique pickers
+     */
+    String getLabel();
+
+    /**
+     * One-line explanation shown next to the name
+     */
+    String getDescription();
+
+    /**
+     * Masking function for one column. Values are never null or blank; the column name
+     * is null for plain text files.
+     */
+    UnaryOperator<String> compile(String columnName);
+
+    /**
+     * Buffer-writing form of compile, same contract. File writers use it for
+     * allocation-free techniques; null when only compile is implemented.
+     */
+    default ValueWriter compileWriter(String columnName) {
+        return null;
+    }
+
+    /**
+     * Same value always masks to the same output without using the random source,
+     * so no per-value random source or token vault is needed
+     */
+    default boolean isDeterministic() {
+        return false;
+    }
+
+    /**
+     * Remembering masked values per column pays off; false for techniques cheaper than a cache lookup
+     */
+    default boolean isCacheable() {
+        return true;
+    }
+
+    /**
+     * Every masked value has as many chars as the value given, surrounding spaces included,
+     * so output can be sized from the input alone
+     */
+    default boolean isLengthPreserving() {
+        return false;
+    }
+
+    /**
+     * compileWriter masks without allocating, so writers need no String per value
+     */
+    default boolean isAllocationFree() {
+        return false;
+    }
+
+    /**
+     * Whether the technique can be offered right now, e.g. its key is configured
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+}
@@ -1,54 +1,43 @@
 package com.mask.util;
 
-import java.nio.charset.StandardCharsets;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.UnaryOperator;
 
 public class MaskingUtils {
 
-    // Enhanced regex patterns for better detection
-    private static final Pattern EMAIL_PATTERN = Pattern.compile(
-        "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$"
-    );
-    
-    private static final Pattern PHONE_PATTERN = Pattern.compile(
-        "^(\\+\\d{1,3}[- ]?)?\\(?(\\d{3})\\)?[- ]?(\\d{3})[- ]?(\\d{4})$|^\\d{10}$"
-    );
-    
-    private static final Pattern CREDIT_CARD_PATTERN = Pattern.compile(
-        "^(?:4[0-9]{12}(?:[0-9]{3})?|5[1-5][0-9]{14}|3[47][0-9]{13}|3[0-9]{13}|6(?:011|5[0-9]{2})[0-9]{12})$"
-    );
-    
-    private static final Pattern AADHAAR_PATTERN = Pattern.compile(
-        "^[0-9]{4}\\s?[0-9]{4}\\s?[0-9]{4}$"
-    );
-    
-    private static final Pattern PAN_PATTERN = Pattern.compile(
-        "^[A-Z]{5}[0-9]{4}[A-Z]{1}$"
-    );
-    
-    private static final Pattern IPV4_PATTERN = Pattern.compile(
-        "^(?:(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$"
-    );
-    
-    private static final Pattern DATE_ISO_PATTERN = Pattern.compile(
-        "^\\d{4}-\\d{2}-\\d{2}$"
-    );
-    
-    private static final Pattern DATE_SLASH_PATTERN = Pattern.compile(
-        "^\\d{2}/\\d{2}/\\d{4}$"
-    );
-    
-    private static final Pattern DATE_DASH_PATTERN = Pattern.compile(
-        "^\\d{2}-\\d{2}-\\d{4}$"
+    // Shared results of detectTypeByValue, one per type
+    private static final Map<String, Optional<String>> DETECTED_TYPES = Map.of(
+        PiiClassifier.EMAIL, Optional.of(PiiClassifier.EMAIL),
+        PiiClassifier.PHONE, Optional.of(PiiClassifier.PHONE),
+        PiiClassifier.CARD, Optional.of(PiiClassifier.CARD),
+        PiiClassifier.AADHAAR, Optional.of(PiiClassifier.AADHAAR),
+        PiiClassifier.PAN, Optional.of(PiiClassifier.PAN),
+        PiiClassifier.IP, Optional.of(PiiClassifier.IP),
+        PiiClassifier.DATE, Optional.of(PiiClassifier.DATE)
     );
 
-    private static final Random RANDOM = new Random();
+    private static final String HASH_PREFIX = "HASH_";
+    private static final String HMAC_PREFIX = "HMAC_";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    // Masked hashes keep the first 4 bytes of the digest
+    private static final int HASH_HEX_CHARS = 8;
+
+    private static final ThreadLocal<HashBuffers> HASH_BUFFERS = ThreadLocal.withInitial(HashBuffers::new);
+
+    private static volatile SecretKeySpec hmacKey;
+
+    private static final String STARS = "*".repeat(64);
+
+    // Scratch for the String forms of the buffer-writing techniques
+    private static final ThreadLocal<MaskBuffer> SCRATCH = ThreadLocal.withInitial(MaskBuffer::new);
 
     // Enhanced fake data arrays
     private static final String[] FAKE_FIRST_NAMES = {
@@ -76,88 +65,176 @@ public class MaskingUtils {
      * Full masking - replaces all characters with asterisks
      */
     public static String fullMask(String input) {
-        if (input == null || input.trim().isEmpty()) {
+        if (input == null || isBlank(input)) {
             return input;
         }
         return "*".repeat(input.length());
     }
 
+    /**
+     * Full masking written to a sink, without building the masked String; null writes nothing
+     */
+    public static void fullMask(String input, Appendable out) throws IOException {
+        if (input == null) {
+            return;
+        }
+        if (isBlank(input)) {
+            out.append(input);
+            return;
+        }
+        appendStars(out, input.length());
+    }
+
     /**
      * Partial masking - shows beginning and end, masks middle
      */
     public static String partialMask(String input) {
-        if (input == null || input.trim().isEmpty()) {
+        if (input == null || isBlank(input)) {
             return input;
         }
 
-        String trimmedInput = input.trim();
-        
+        MaskBuffer buffer = SCRATCH.get().reset();
+        try {
+            partialMask(input, buffer);
+        } catch (IOException e) {
+            // MaskBuffer never throws
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Partial masking written to a sink, copying the shown characters straight from the
+     * input; null writes nothing
+     */
+    public static void partialMask(String input, Appendable out) throws IOException {
+        if (input == null) {
+            return;
+        }
+        // Same bounds as String.trim()
+        int start = 0;
+        int end = input.length();
+        while (start < end && input.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && input.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            out.append(input);
+            return;
+        }
+
+        PiiClassifier.Shape shape = PiiClassifier.scan(input);
+
         // Special handling for email
-        if (EMAIL_PATTERN.matcher(trimmedInput).matches()) {
-            int atIndex = trimmedInput.indexOf("@");
-            if (atIndex > 0) {
-                String localPart = trimmedInput.substring(0, atIndex);
-                String domain = trimmedInput.substring(atIndex);
-                
-                if (localPart.length() <= 2) {
-                    return "*".repeat(localPart.length()) + domain;
-                } else {
-                    return localPart.charAt(0) + "*".repeat(localPart.length() - 2) + 
-                           localPart.charAt(localPart.length() - 1) + domain;
-                }
+        if (shape.isEmail()) {
+            int atIndex = input.indexOf('@', start);
+            int localLength = atIndex - start;
+            if (localLength <= 2) {
+                appendStars(out, localLength);
+            } else {
+                out.append(input.charAt(start));
+                appendStars(out, localLength - 2);
+                out.append(input.charAt(atIndex - 1));
             }
+            out.append(input, atIndex, end);
+            return;
         }
-        
-        // Special handling for phone numbers
-        if (PHONE_PATTERN.matcher(trimmedInput.replaceAll("[^\\d]", "")).matches()) {
-            String digitsOnly = trimmedInput.replaceAll("[^\\d]", "");
-            if (digitsOnly.length() >= 10) {
-                return "*".repeat(digitsOnly.length() - 4) + digitsOnly.substring(digitsOnly.length() - 4);
+
+        // Special handling for phone numbers: keep the last 4 digits
+        if (shape.isPhone()) {
+            appendStars(out, shape.getDigitCount() - 4);
+            int from = end;
+            for (int found = 0; found < 4; ) {
+                if (PiiClassifier.isDigit(input.charAt(--from))) {
+                    found++;
+                }
+            }
+            for (int i = from; i < end; i++) {
+                char c = input.charAt(i);
+                if (PiiClassifier.isDigit(c)) {
+                    out.append(c);
+                }
             }
+            return;
         }
-        
+
         // General partial masking
-        int length = trimmedInput.length();
+        int length = end - start;
         if (length <= 3) {
-            return "*".repeat(length);
+            appendStars(out, length);
         } else if (length <= 6) {
-            return trimmedInput.charAt(0) + "*".repeat(length - 2) + trimmedInput.charAt(length - 1);
+            out.append(input.charAt(start));
+            appendStars(out, length - 2);
+            out.append(input.charAt(end - 1));
         } else {
             int showChars = Math.max(1, length / 4);
-            String start = trimmedInput.substring(0, showChars);
-            String end = trimmedInput.substring(length - showChars);
-            String middle = "*".repeat(length - (2 * showChars));
-            return start + middle + end;
+            out.append(input, start, start + showChars);
+            appendStars(out, length - (2 * showChars));
+            out.append(input, end - showChars, end);
+        }
+    }
+
+    private static void appendStars(Appendable out, int count) throws IOException {
+        if (out instanceof MaskBuffer) {
+            ((MaskBuffer) out).repeat('*', count);
+            return;
+        }
+        while (count > 0) {
+            int chunk = Math.min(count, STARS.length());
+            out.append(STARS, 0, chunk);
+            count -= chunk;
         }
     }
 
+    /**
+     * Same whitespace rule as trim().isEmpty(), without allocating
+     */
+    private static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Random replacement with contextual fake data
      */
     public static String randomReplace(String original, String columnHint) {
+        return randomReplaceWithLowerHint(original, columnHint != null ? columnHint.toLowerCase() : "");
+    }
+
+    /**
+     * Random replacement with an already lower-cased column hint
+     */
+    static String randomReplaceWithLowerHint(String original, String lowerHint) {
         if (original == null || original.trim().isEmpty()) {
             return original;
         }
 
         String trimmedOriginal = original.trim();
-        String lowerHint = columnHint != null ? columnHint.toLowerCase() : "";
+        PiiClassifier.Shape shape = PiiClassifier.scan(trimmedOriginal);
+        MaskingRandom random = MaskingRandom.current();
         
         // Email replacement
-        if (EMAIL_PATTERN.matcher(trimmedOriginal).matches() || lowerHint.contains("email")) {
-            String firstName = FAKE_FIRST_NAMES[RANDOM.nextInt(FAKE_FIRST_NAMES.length)].toLowerCase();
-            String lastName = FAKE_LAST_NAMES[RANDOM.nextInt(FAKE_LAST_NAMES.length)].toLowerCase();
-            String domain = FAKE_EMAIL_DOMAINS[RANDOM.nextInt(FAKE_EMAIL_DOMAINS.length)];
+        if (shape.isEmail() || lowerHint.contains("email")) {
+            String firstName = FAKE_FIRST_NAMES[random.nextInt(FAKE_FIRST_NAMES.length)].toLowerCase();
+            String lastName = FAKE_LAST_NAMES[random.nextInt(FAKE_LAST_NAMES.length)].toLowerCase();
+            String domain = FAKE_EMAIL_DOMAINS[random.nextInt(FAKE_EMAIL_DOMAINS.length)];
             return firstName + "." + lastName + "@" + domain;
         }
         
         // Phone number replacement
-        if (PHONE_PATTERN.matcher(trimmedOriginal.replaceAll("[^\\d]", "")).matches() || 
+        if (shape.isPhone() || 
             lowerHint.contains("phone") || lowerHint.contains("mobile")) {
             StringBuilder phone = new StringBuilder();
             // Indian mobile numbers typically start with 6, 7, 8, or 9
-            phone.append(6 + RANDOM.nextInt(4));
+            phone.append(6 + random.nextInt(4));
             for (int i = 1; i < 10; i++) {
-                phone.append(RANDOM.nextInt(10));
+                phone.append(random.nextInt(10));
             }
             return phone.toString();
         }
@@ -165,34 +242,34 @@ public class MaskingUtils {
         // Name replacement
         if (lowerHint.contains("name")) {
             if (lowerHint.contains("first") || lowerHint.contains("fname")) {
-                return FAKE_FIRST_NAMES[RANDOM.nextInt(FAKE_FIRST_NAMES.length)];
+                return FAKE_FIRST_NAMES[random.nextInt(FAKE_FIRST_NAMES.length)];
             } else if (lowerHint.contains("last") || lowerHint.contains("surname") || lowerHint.contains("lname")) {
-                return FAKE_LAST_NAMES[RANDOM.nextInt(FAKE_LAST_NAMES.length)];
+                return FAKE_LAST_NAMES[random.nextInt(FAKE_LAST_NAMES.length)];
             } else {
-                return FAKE_FIRST_NAMES[RANDOM.nextInt(FAKE_FIRST_NAMES.length)] + " " + 
-                       FAKE_LAST_NAMES[RANDOM.nextInt(FAKE_LAST_NAMES.length)];
+                return FAKE_FIRST_NAMES[random.nextInt(FAKE_FIRST_NAMES.length)] + " " + 
+                       FAKE_LAST_NAMES[random.nextInt(FAKE_LAST_NAMES.length)];
             }
         }
         
         // Date replacement
-        if (isDateValue(trimmedOriginal) || lowerHint.contains("date") || 
+        if (shape.dateFormat() != PiiClassifier.DATE_NONE || lowerHint.contains("date") || 
             lowerHint.contains("dob") || lowerHint.contains("birth")) {
             return generateRandomDate(trimmedOriginal);
         }
         
         // Credit card replacement
-        if (CREDIT_CARD_PATTERN.matcher(trimmedOriginal.replaceAll("[^\\d]", "")).matches() || 
+        if (shape.isCardNumber() || 
             lowerHint.contains("card")) {
             return generateFakeCreditCard();
         }
         
         // PAN replacement
-        if (PAN_PATTERN.matcher(trimmedOriginal).matches() || lowerHint.contains("pan")) {
+        if (shape.isPan(false) || lowerHint.contains("pan")) {
             return generateFakePAN();
         }
         
         // Aadhaar replacement
-        if (AADHAAR_PATTERN.matcher(trimmedOriginal.replaceAll("\\s", "")).matches() || 
+        if (shape.isSpacedAadhaar() || 
             lowerHint.contains("aadhaar") || lowerHint.contains("aadhar")) {
             return generateFakeAadhaar();
         }
@@ -210,61 +287,154 @@ public class MaskingUtils {
         }
 
         try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            
-            for (byte b : hash) {
-                String hex = Integer.toHexString(0xff & b);
-                if (hex.length() == 1) {
-                    hexString.append('0');
-                }
-                hexString.append(hex);
-            }
-            
-            return "HASH_" + hexString.toString().substring(0, 8).toUpperCase();
+            HashBuffers buffers = HASH_BUFFERS.get();
+            MessageDigest digest = buffers.sha256;
+            digest.update(buffers.utf8(input), 0, buffers.encodedLength);
+            digest.digest(buffers.hash, 0, buffers.hash.length);
+            return buffers.render(HASH_PREFIX);
         } catch (Exception e) {
             return "HASH_ERROR";
         }
     }
 
     /**
-     * Date shifting - maintains format but shifts date by random days
+     * Keyed hash masking using HMAC-SHA256, so values can't be confirmed by hashing guesses
      */
-    public static String dateShift(String input) {
+    public static String hmacMask(String input) {
         if (input == null || input.trim().isEmpty()) {
             return input;
         }
 
-        String trimmedInput = input.trim();
-        
         try {
-            LocalDate originalDate = null;
-            DateTimeFormatter formatter = null;
-            
-            // Try different date formats
-            if (DATE_ISO_PATTERN.matcher(trimmedInput).matches()) {
-                formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-                originalDate = LocalDate.parse(trimmedInput, formatter);
-            } else if (DATE_SLASH_PATTERN.matcher(trimmedInput).matches()) {
-                formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
-                originalDate = LocalDate.parse(trimmedInput, formatter);
-            } else if (DATE_DASH_PATTERN.matcher(trimmedInput).matches()) {
-                formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
-                originalDate = LocalDate.parse(trimmedInput, formatter);
+            HashBuffers buffers = HASH_BUFFERS.get();
+            Mac mac = buffers.hmac(requireHmacKey());
+            mac.update(buffers.utf8(input), 0, buffers.encodedLength);
+            mac.doFinal(buffers.hash, 0);
+            return buffers.render(HMAC_PREFIX);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            return "HMAC_ERROR";
+        }
+    }
+
+    /**
+     * Key used by HMAC_MASK; set once at startup from configuration
+     */
+    public static void setHmacKey(byte[] key) {
+        hmacKey = key != null && key.length > 0 ? new SecretKeySpec(key, HMAC_ALGORITHM) : null;
+    }
+
+    public static boolean isHmacConfigured() {
+        return hmacKey != null;
+    }
+
+    static SecretKeySpec requireHmacKey() {
+        SecretKeySpec key = hmacKey;
+        if (key == null) {
+            throw new IllegalStateException("HMAC_MASK requires app.masking.hash.hmac-key to be set");
+        }
+        return key;
+    }
+
+    /**
+     * Per-thread digests and scratch buffers for the hash techniques
+     */
+    private static final class HashBuffers {
+        // Hex digits for every byte value, two chars per byte
+        private static final char[] HEX_TABLE = new char[512];
+
+        static {
+            char[] digits = "0123456789ABCDEF".toCharArray();
+            for (int b = 0; b < 256; b++) {
+                HEX_TABLE[b * 2] = digits[b >>> 4];
+                HEX_TABLE[b * 2 + 1] = digits[b & 0x0F];
             }
-            
-            if (originalDate != null && formatter != null) {
-                // Shift by ±180 days to maintain seasonal context
-                int shiftDays = RANDOM.nextInt(361) - 180;
-                LocalDate shiftedDate = originalDate.plusDays(shiftDays);
-                return shiftedDate.format(formatter);
+        }
+
+        private final MessageDigest sha256;
+        private final byte[] hash = new byte[32];
+        private final char[] output = new char[HASH_PREFIX.length() + HASH_HEX_CHARS];
+        private byte[] encoded = new byte[256];
+        private int encodedLength;
+        private Mac mac;
+        private SecretKeySpec macKey;
+
+        private HashBuffers() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
             }
-        } catch (DateTimeParseException e) {
-            // If parsing fails, return original
         }
-        
-        return trimmedInput;
+
+        Mac hmac(SecretKeySpec key) throws GeneralSecurityException {
+            if (mac == null) {
+                mac = Mac.getInstance(HMAC_ALGORITHM);
+            }
+            if (macKey != key) {
+                mac.init(key);
+                macKey = key;
+            }
+            return mac;
+        }
+
+        /**
+         * Encode as String.getBytes(UTF_8) does (unpaired surrogates become '?') into the reused buffer
+         */
+        byte[] utf8(String value) {
+            int length = value.length();
+            if (encoded.length < length * 3) {
+                encoded = new byte[Math.max(length * 3, encoded.length * 2)];
+            }
+            byte[] out = encoded;
+            int pos = 0;
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x80) {
+                    out[pos++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[pos++] = (byte) (0xC0 | (c >> 6));
+                    out[pos++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length
+                        && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    out[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    out[pos++] = '?';
+                } else {
+                    out[pos++] = (byte) (0xE0 | (c >> 12));
+                    out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[pos++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            encodedLength = pos;
+            return out;
+        }
+
+        /**
+         * Prefix followed by the first bytes of the hash as upper-case hex
+         */
+        String render(String prefix) {
+            int pos = prefix.length();
+            prefix.getChars(0, pos, output, 0);
+            for (int i = 0; i < HASH_HEX_CHARS / 2; i++) {
+                int index = (hash[i] & 0xFF) * 2;
+                output[pos++] = HEX_TABLE[index];
+                output[pos++] = HEX_TABLE[index + 1];
+            }
+            return new String(output, 0, pos);
+        }
+    }
+
+    /**
+     * Date shifting - maintains format but shifts date by random days
+     */
+    public static String dateShift(String input) {
+        return DateShifter.shiftAnyLayout(input);
     }
 
     /**
@@ -275,74 +445,25 @@ public class MaskingUtils {
             return null;
         }
 
-        if (technique == null || technique.trim().isEmpty()) {
-            return original;
-        }
+        return compileTechnique(technique, columnHint).apply(original);
+    }
 
-        switch (technique.toUpperCase().trim()) {
-            case "FULL_MASK":
-                return fullMask(original);
-            case "PARTIAL_MASK":
-                return partialMask(original);
-            case "RANDOM_REPLACE":
-                return randomReplace(original, columnHint);
-            case "HASH_MASK":
-                return hashMask(original);
-            case "DATE_SHIFT":
-                return dateShift(original);
-            default:
-                // Default to full mask for unknown techniques
-                return fullMask(original);
+    /**
+     * Resolve a built-in technique name once into a reusable masking function for a column
+     */
+    public static UnaryOperator<String> compileTechnique(String technique, String columnHint) {
+        if (technique == null || technique.trim().isEmpty()) {
+            return UnaryOperator.identity();
         }
+        return BuiltInTechnique.forName(technique).compile(columnHint);
     }
 
     /**
      * Detect data type by analyzing the value
      */
     public static Optional<String> detectTypeByValue(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return Optional.empty();
-        }
-
-        String trimmedValue = value.trim();
-        
-        // Email detection
-        if (EMAIL_PATTERN.matcher(trimmedValue).matches()) {
-            return Optional.of("email");
-        }
-        
-        // Phone detection
-        String digitsOnly = trimmedValue.replaceAll("[^\\d]", "");
-        if (PHONE_PATTERN.matcher(digitsOnly).matches() && digitsOnly.length() >= 10) {
-            return Optional.of("phone");
-        }
-        
-        // Credit card detection
-        if (CREDIT_CARD_PATTERN.matcher(digitsOnly).matches()) {
-            return Optional.of("card");
-        }
-        
-        // Aadhaar detection
-        if (AADHAAR_PATTERN.matcher(digitsOnly).matches() && digitsOnly.length() == 12) {
-            return Optional.of("aadhaar");
-        }
-        
-        // PAN detection
-        if (PAN_PATTERN.matcher(trimmedValue.toUpperCase()).matches()) {
-            return Optional.of("pan");
-        }
-        
-        // IP address detection
-        if (IPV4_PATTERN.matcher(trimmedValue).matches()) {
-            return Optional.of("ip");
-        }
-        
-        // Date detection
-        if (isDateValue(trimmedValue)) {
-            return Optional.of("date");
-        }
-        
-        return Optional.empty();
+        String type = PiiClassifier.classify(value);
+        return type != null ? DETECTED_TYPES.get(type) : Optional.empty();
     }
 
     /**
@@ -358,43 +479,29 @@ public class MaskingUtils {
         return SENSITIVE_KEYWORDS.stream().anyMatch(lowerHeader::contains);
     }
 
-    /**
-     * Helper method to check if a string represents a date
-     */
-    private static boolean isDateValue(String value) {
-        return DATE_ISO_PATTERN.matcher(value).matches() ||
-               DATE_SLASH_PATTERN.matcher(value).matches() ||
-               DATE_DASH_PATTERN.matcher(value).matches();
-    }
-
     /**
      * Generate a random date in similar format to original
      */
     private static String generateRandomDate(String originalDate) {
-        LocalDate baseDate = LocalDate.now().minusYears(RANDOM.nextInt(50));
-        int randomDays = RANDOM.nextInt(365 * 10);
+        MaskingRandom random = MaskingRandom.current();
+        LocalDate baseDate = random.today().minusYears(random.nextInt(50));
+        int randomDays = random.nextInt(365 * 10);
         LocalDate randomDate = baseDate.plusDays(randomDays);
 
-        if (DATE_ISO_PATTERN.matcher(originalDate).matches()) {
-            return randomDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-        } else if (DATE_SLASH_PATTERN.matcher(originalDate).matches()) {
-            return randomDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-        } else if (DATE_DASH_PATTERN.matcher(originalDate).matches()) {
-            return randomDate.format(DateTimeFormatter.ofPattern("dd-MM-yyyy"));
-        }
-        
-        return randomDate.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+        int layout = PiiClassifier.dateFormat(originalDate, 0, originalDate.length());
+        return DateShifter.format(randomDate, layout != PiiClassifier.DATE_NONE ? layout : PiiClassifier.DATE_ISO);
     }
 
     /**
      * Generate a fake credit card number
      */
     private static String generateFakeCreditCard() {
+        MaskingRandom random = MaskingRandom.current();
         StringBuilder card = new StringBuilder();
         // Start with 4 for Visa-like format
         card.append("4");
         for (int i = 1; i < 16; i++) {
-            card.append(RANDOM.nextInt(10));
+            card.append(random.nextInt(10));
         }
         return card.toString();
     }
@@ -403,17 +510,18 @@ public class MaskingUtils {
      * Generate a fake PAN number
      */
     private static String generateFakePAN() {
+        MaskingRandom random = MaskingRandom.current();
         StringBuilder pan = new StringBuilder();
         // 5 random uppercase letters
         for (int i = 0; i < 5; i++) {
-            pan.append((char) ('A' + RANDOM.nextInt(26)));
+            pan.append((char) ('A' + random.nextInt(26)));
         }
         // 4 random digits
         for (int i = 0; i < 4; i++) {
-            pan.append(RANDOM.nextInt(10));
+            pan.append(random.nextInt(10));
         }
         // 1 random uppercase letter
-        pan.append((char) ('A' + RANDOM.nextInt(26)));
+        pan.append((char) ('A' + random.nextInt(26)));
         return pan.toString();
     }
 
@@ -421,9 +529,10 @@ public class MaskingUtils {
      * Generate a fake Aadhaar number
      */
     private static String generateFakeAadhaar() {
+        MaskingRandom random = MaskingRandom.current();
         StringBuilder aadhaar = new StringBuilder();
         for (int i = 0; i < 12; i++) {
-            aadhaar.append(RANDOM.nextInt(10));
+            aadhaar.append(random.nextInt(10));
             if (i == 3 || i == 7) {
                 aadhaar.append(" ");
             }
@@ -439,26 +548,24 @@ public class MaskingUtils {
             return input;
         }
 
-        List<Character> chars = new ArrayList<>();
-        for (char c : input.toCharArray()) {
-            if (Character.isLetterOrDigit(c)) {
-                chars.add(c);
+        char[] result = input.toCharArray();
+        int[] positions = new int[result.length];
+        int count = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (Character.isLetterOrDigit(result[i])) {
+                positions[count++] = i;
             }
         }
 
-        Collections.shuffle(chars);
-
-        StringBuilder result = new StringBuilder();
-        int charIndex = 0;
-        
-        for (char c : input.toCharArray()) {
-            if (Character.isLetterOrDigit(c) && charIndex < chars.size()) {
-                result.append(chars.get(charIndex++));
-            } else {
-                result.append(c);
-            }
+        // Fisher-Yates over the letter and digit positions only
+        MaskingRandom random = MaskingRandom.current();
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            char swap = result[positions[i]];
+            result[positions[i]] = result[positions[j]];
+            result[positions[j]] = swap;
         }
 
-        return result.toString();
+        return new String(result);
     }
 }
\ No newline at end of file
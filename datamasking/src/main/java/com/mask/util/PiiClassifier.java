@@ -0,0 +1,354 @@
+package com.mask.util;
+
+import java.util.regex.Pattern;
+
+/**
+ * Single-pass classification of values into PII types. One scan over the trimmed
+ * value collects the counts and positions that every type check needs; the checks
+ * then give the same verdicts as the original anchored regexes without allocating.
+ */
+public final class PiiClassifier {
+
+    public static final String EMAIL = "email";
+    public static final String PHONE = "phone";
+    public static final String CARD = "card";
+    public static final String AADHAAR = "aadhaar";
+    public static final String PAN = "pan";
+    public static final String IP = "ip";
+    public static final String DATE = "date";
+
+    public static final int DATE_NONE = 0;
+    public static final int DATE_ISO = 1;   // yyyy-MM-dd
+    public static final int DATE_SLASH = 2; // dd/MM/yyyy
+    public static final int DATE_DASH = 3;  // dd-MM-yyyy
+
+    // Only for values with non-ASCII letters, whose upper-case form can differ in length
+    private static final Pattern PAN_PATTERN = Pattern.compile("^[A-Z]{5}[0-9]{4}[A-Z]{1}$");
+
+    private static final ThreadLocal<Shape> SHAPES = ThreadLocal.withInitial(Shape::new);
+
+    private PiiClassifier() {
+    }
+
+    /**
+     * Type of a value, checked in the order email, phone, card, aadhaar, pan, ip, date;
+     * null when the value is blank or matches none
+     */
+    public static String classify(String value) {
+        if (value == null) {
+            return null;
+        }
+        Shape shape = scan(value);
+        if (shape.isBlank()) {
+            return null;
+        }
+        if (shape.isEmail()) {
+            return EMAIL;
+        }
+        if (shape.isPhone()) {
+            return PHONE;
+        }
+        if (shape.isCardNumber() && shape.passesLuhn()) {
+            return CARD;
+        }
+        if (shape.digitCount == 12) {
+            return AADHAAR;
+        }
+        if (shape.isPan(true)) {
+            return PAN;
+        }
+        if (shape.isIpv4()) {
+            return IP;
+        }
+        if (shape.dateFormat() != DATE_NONE) {
+            return DATE;
+        }
+        return null;
+    }
+
+    /**
+     * Scan a value once; the result is reused by the calling thread on its next scan
+     */
+    public static Shape scan(String value) {
+        Shape shape = SHAPES.get();
+        shape.reset(value);
+        return shape;
+    }
+
+    /**
+     * Which of the three supported date layouts a trimmed value has, by position only
+     */
+    public static int dateFormat(CharSequence value, int start, int end) {
+        if (end - start != 10) {
+            return DATE_NONE;
+        }
+        if (digits(value, start, 4) && value.charAt(start + 4) == '-'
+                && digits(value, start + 5, 2) && value.charAt(start + 7) == '-' && digits(value, start + 8, 2)) {
+            return DATE_ISO;
+        }
+        char separator = value.charAt(start + 2);
+        if ((separator == '/' || separator == '-') && digits(value, start, 2)
+                && value.charAt(start + 5) == separator && digits(value, start + 3, 2) && digits(value, start + 6, 4)) {
+            return separator == '/' ? DATE_SLASH : DATE_DASH;
+        }
+        return DATE_NONE;
+    }
+
+    private static boolean digits(CharSequence value, int from, int count) {
+        for (int i = from; i < from + count; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isUpper(char c) {
+        return c >= 'A' && c <= 'Z';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    /**
+     * Counts and positions gathered from one pass over a trimmed value
+     */
+    public static final class Shape {
+
+        private String value;
+        private int start;
+        private int end;
+
+        private int digitCount;
+        private int leadingDigits;     // first up to 4 digits as a number
+        private int luhnEvenSum;       // Luhn sum doubling digits at even positions
+        private int luhnOddSum;        // Luhn sum doubling digits at odd positions
+        private int dotCount;
+        private int atCount;
+        private int atIndex;
+        private int lastDot;
+        private int lastNonLetter;
+        private int lastPlusOrUnderscore;
+        private boolean nonEmailChar;
+        private boolean nonDigitNonSpace;
+        private boolean nonDigitNonDot;
+        private boolean nonAscii;
+
+        private Shape() {
+        }
+
+        private void reset(String input) {
+            value = input;
+            // Same bounds as String.trim()
+            int from = 0;
+            int to = input.length();
+            while (from < to && input.charAt(from) <= ' ') {
+                from++;
+            }
+            while (to > from && input.charAt(to - 1) <= ' ') {
+                to--;
+            }
+            start = from;
+            end = to;
+
+            digitCount = 0;
+            leadingDigits = 0;
+            luhnEvenSum = 0;
+            luhnOddSum = 0;
+            dotCount = 0;
+            atCount = 0;
+            atIndex = -1;
+            lastDot = -1;
+            lastNonLetter = -1;
+            lastPlusOrUnderscore = -1;
+            nonEmailChar = false;
+            nonDigitNonSpace = false;
+            nonDigitNonDot = false;
+            nonAscii = false;
+
+            for (int i = from; i < to; i++) {
+                char c = input.charAt(i);
+                if (isDigit(c)) {
+                    int digit = c - '0';
+                    int doubled = digit * 2 > 9 ? digit * 2 - 9 : digit * 2;
+                    if ((digitCount & 1) == 0) {
+                        luhnEvenSum += doubled;
+                        luhnOddSum += digit;
+                    } else {
+                        luhnEvenSum += digit;
+                        luhnOddSum += doubled;
+                    }
+                    if (digitCount < 4) {
+                        leadingDigits = leadingDigits * 10 + digit;
+                    }
+                    digitCount++;
+                    lastNonLetter = i;
+                    continue;
+                }
+
+                if (!isLetter(c)) {
+                    lastNonLetter = i;
+                }
+                if (c != '.') {
+                    nonDigitNonDot = true;
+                }
+                if (!isRegexSpace(c)) {
+                    nonDigitNonSpace = true;
+                }
+                if (c >= 0x80) {
+                    nonAscii = true;
+                }
+
+                if (c == '@') {
+                    atCount++;
+                    atIndex = i;
+                } else if (c == '.') {
+                    dotCount++;
+                    lastDot = i;
+                } else if (c == '+' || c == '_') {
+                    lastPlusOrUnderscore = i;
+                } else if (c != '-' && !isLetter(c)) {
+                    nonEmailChar = true;
+                }
+            }
+        }
+
+        public boolean isBlank() {
+            return start == end;
+        }
+
+        public int getDigitCount() {
+            return digitCount;
+        }
+
+        /**
+         * Same verdict as ^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\.[A-Za-z]{2,}$
+         */
+        public boolean isEmail() {
+            return atCount == 1 && !nonEmailChar
+                && atIndex > start
+                && lastPlusOrUnderscore < atIndex
+                && lastDot > atIndex + 1
+                && end - lastDot - 1 >= 2
+                && lastNonLetter == lastDot;
+        }
+
+        /**
+         * Ten digits once separators are dropped, which is what the phone pattern accepts
+         */
+        public boolean isPhone() {
+            return digitCount == 10;
+        }
+
+        /**
+         * Card issuer prefix and length on the digits alone, without the checksum
+         */
+        public boolean isCardNumber() {
+            if (digitCount < 13) {
+                return false;
+            }
+            int firstTwo = leadingDigits / 100;
+            int first = firstTwo / 10;
+            switch (digitCount) {
+                case 13:
+                    return first == 4;
+                case 14:
+                    return first == 3;
+                case 15:
+                    return firstTwo == 34 || firstTwo == 37;
+                case 16:
+                    return first == 4 || (firstTwo >= 51 && firstTwo <= 55)
+                        || leadingDigits == 6011 || firstTwo == 65;
+                default:
+                    return false;
+            }
+        }
+
+        public boolean passesLuhn() {
+            // The rightmost digit is never doubled
+            int sum = (digitCount & 1) == 0 ? luhnEvenSum : luhnOddSum;
+            return digitCount > 0 && sum % 10 == 0;
+        }
+
+        /**
+         * Twelve digits with nothing but whitespace between them
+         */
+        public boolean isSpacedAadhaar() {
+            return digitCount == 12 && !nonDigitNonSpace;
+        }
+
+        /**
+         * Five letters, four digits, one letter; ignoreCase compares the upper-cased value
+         */
+        public boolean isPan(boolean ignoreCase) {
+            if (ignoreCase && nonAscii) {
+                return PAN_PATTERN.matcher(value.substring(start, end).toUpperCase()).matches();
+            }
+            if (end - start != 10 || digitCount != 4) {
+                return false;
+            }
+            for (int i = 0; i < 10; i++) {
+                char c = value.charAt(start + i);
+                boolean ok = i >= 5 && i <= 8 ? isDigit(c) : ignoreCase ? isLetter(c) : isUpper(c);
+                if (!ok) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Four dot-separated octets of one to three digits, each at most 255
+         */
+        public boolean isIpv4() {
+            if (nonDigitNonDot || dotCount != 3) {
+                return false;
+            }
+            int octetDigits = 0;
+            int octet = 0;
+            for (int i = start; i <= end; i++) {
+                if (i == end || value.charAt(i) == '.') {
+                    if (octetDigits == 0 || octet > 255) {
+                        return false;
+                    }
+                    octetDigits = 0;
+                    octet = 0;
+                } else if (++octetDigits > 3) {
+                    return false;
+                } else {
+                    octet = octet * 10 + (value.charAt(i) - '0');
+                }
+            }
+            return true;
+        }
+
+        public int dateFormat() {
+            return PiiClassifier.dateFormat(value, start, end);
+        }
+
+        /**
+         * The last count digits of the value, in order
+         */
+        public String lastDigits(int count) {
+            char[] digits = new char[count];
+            int found = 0;
+            for (int i = end - 1; i >= start && found < count; i--) {
+                char c = value.charAt(i);
+                if (isDigit(c)) {
+                    digits[count - 1 - found++] = c;
+                }
+            }
+            return new String(digits, count - found, found);
+        }
+
+        private static boolean isRegexSpace(char c) {
+            // \s in java.util.regex: [ \t\n\x0B\f\r]
+            return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+        }
+    }
+}
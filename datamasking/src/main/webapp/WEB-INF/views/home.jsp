@@ -74,7 +74,7 @@
                                     <i class="fas fa-file-upload"></i>
                                 </div>
                                 <h4>Versatile File Upload</h4>
-                                <p>Supports CSV, Excel, JSON, and TXT files.</p>
+                                <p>Supports CSV, Excel, JSON, JSON Lines and TXT files.</p>
                             </div>
                             <div class="feature-card">
                                 <div class="feature-icon">
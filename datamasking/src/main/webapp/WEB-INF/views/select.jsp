@@ -81,11 +81,9 @@
                 <div class="form-group">
                     <select name="globalTechnique" class="form-select" id="globalTechnique">
                         <option value="">-- Select Global Technique --</option>
-                        <option value="FULL_MASK">Full Mask (Replace all with *)</option>
-                        <option value="PARTIAL_MASK">Partial Mask (Show first/last chars)</option>
-                        <option value="RANDOM_REPLACE">Random Replace (Realistic fake data)</option>
-                        <option value="HASH_MASK">Hash Mask (SHA-256 hash)</option>
-                        <option value="DATE_SHIFT">Date Shift (For dates only)</option>
+                        <c:forEach var="technique" items="${supportedTechniques}">
+                            <option value="${fn:escapeXml(technique.name)}"><c:out value="${technique.description}"/></option>
+                        </c:forEach>
                     </select>
                 </div>
             </div>
@@ -113,11 +111,9 @@
                                     <div class="form-group">
                                         <select name="columnTechniques[${suggestion.key}]" class="form-select">
                                             <option value="">-- No Masking --</option>
-                                            <option value="FULL_MASK" ${suggestion.value == 'FULL_MASK' ? 'selected' : ''}>Full Mask</option>
-                                            <option value="PARTIAL_MASK" ${suggestion.value == 'PARTIAL_MASK' ? 'selected' : ''}>Partial Mask</option>
-                                            <option value="RANDOM_REPLACE" ${suggestion.value == 'RANDOM_REPLACE' ? 'selected' : ''}>Random Replace</option>
-                                            <option value="HASH_MASK" ${suggestion.value == 'HASH_MASK' ? 'selected' : ''}>Hash Mask</option>
-                                            <option value="DATE_SHIFT" ${suggestion.value == 'DATE_SHIFT' ? 'selected' : ''}>Date Shift</option>
+                                            <c:forEach var="technique" items="${supportedTechniques}">
+                                                <option value="${fn:escapeXml(technique.name)}" ${suggestion.value == technique.name ? 'selected' : ''}><c:out value="${technique.label}"/></option>
+                                            </c:forEach>
                                         </select>
                                     </div>
                                 </div>
@@ -138,11 +134,9 @@
                             <div class="form-group">
                                 <select class="form-select" id="customColumnTechnique">
                                     <option value="">-- Select Technique --</option>
-                                    <option value="FULL_MASK">Full Mask</option>
-                                    <option value="PARTIAL_MASK">Partial Mask</option>
-                                    <option value="RANDOM_REPLACE">Random Replace</option>
-                                    <option value="HASH_MASK">Hash Mask</option>
-                                    <option value="DATE_SHIFT">Date Shift</option>
+                                    <c:forEach var="technique" items="${supportedTechniques}">
+                                        <option value="${fn:escapeXml(technique.name)}"><c:out value="${technique.label}"/></option>
+                                    </c:forEach>
                                 </select>
                             </div>
                             <div class="form-group">
@@ -272,14 +266,13 @@
         }
         
         function getTechniqueName(technique) {
-            const techniques = {
-                'FULL_MASK': 'Full Mask',
-                'PARTIAL_MASK': 'Partial Mask',
-                'RANDOM_REPLACE': 'Random Replace',
-                'HASH_MASK': 'Hash Mask',
-                'DATE_SHIFT': 'Date Shift'
-            };
-            return techniques[technique] || technique;
+            // Labels come from the technique picker, which lists every available technique
+            for (const option of document.getElementById('customColumnTechnique').options) {
+                if (option.value === technique) {
+                    return option.textContent;
+                }
+            }
+            return technique;
         }
 
         document.getElementById('maskingForm').addEventListener('submit', function(e) {
@@ -57,12 +57,12 @@
                           enctype="multipart/form-data" id="uploadForm">
                         <div class="file-input-container">
                             <input type="file" name="file" id="fileInput" required 
-                                   accept=".csv,.txt,.xlsx,.xls,.json"
+                                   accept=".csv,.txt,.xlsx,.xls,.json,.jsonl,.ndjson"
                                    onchange="validateFile(this)">
                             <label for="fileInput" class="file-input-label">
                                 <i class="fas fa-plus"></i>
                                 <span>Choose File</span>
-                                <div class="file-types">Max 10MB: CSV, TXT, XLSX, JSON</div>
+                                <div class="file-types">Max 10MB: CSV, TXT, XLSX, JSON, JSONL</div>
                             </label>
                         </div>
                         <div class="selected-file" id="selectedFile" style="display: none;">
@@ -161,6 +161,24 @@
                             </div>
                         </c:otherwise>
                     </c:choose>
+                    <c:if test="${pagedBack or not empty nextBefore}">
+                        <div class="files-pager">
+                            <c:if test="${pagedBack}">
+                                <a href="${pageContext.request.contextPath}/upload" class="btn btn-secondary">
+                                    <i class="fas fa-angle-double-left"></i> Newest
+                                </a>
+                            </c:if>
+                            <c:if test="${not empty nextBefore}">
+                                <c:url var="olderUrl" value="/upload">
+                                    <c:param name="before" value="${nextBefore}"/>
+                                    <c:param name="beforeId" value="${nextBeforeId}"/>
+                                </c:url>
+                                <a href="${olderUrl}" class="btn btn-secondary">
+                                    Older <i class="fas fa-angle-right"></i>
+                                </a>
+                            </c:if>
+                        </div>
+                    </c:if>
                 </div>
             </section>
         </main>
@@ -177,7 +195,7 @@
                 alert('File size exceeds 10MB limit.');
                 removeFile(); return;
             }
-            const allowedTypes = ['.csv', '.txt', '.xlsx', '.xls', '.json'];
+            const allowedTypes = ['.csv', '.txt', '.xlsx', '.xls', '.json', '.jsonl', '.ndjson'];
             const isValidType = allowedTypes.some(type => file.name.toLowerCase().endsWith(type));
             if (!isValidType) {
                 alert('Invalid file type. Please select a supported file.');
@@ -215,9 +233,26 @@
             }
         }
         function checkProcessingFiles() {
-            if (document.querySelector('.status-processing')) {
-                setTimeout(() => window.location.reload(), 5000);
-            }
+            const processingRows = document.querySelectorAll('tr[data-file-id] .status-processing');
+            if (processingRows.length === 0) return;
+            processingRows.forEach(badge => {
+                const fileId = badge.closest('tr').dataset.fileId;
+                fetch('${pageContext.request.contextPath}/status/' + fileId)
+                .then(response => response.json())
+                .then(data => {
+                    if (data.status && data.status !== 'PROCESSING') {
+                        window.location.reload();
+                        return;
+                    }
+                    if (data.rowsProcessed !== undefined) {
+                        let text = ' Processing - ' + data.rowsProcessed.toLocaleString() + ' rows';
+                        if (data.bytesPerSecond) text += ', ' + formatFileSize(data.bytesPerSecond) + '/s';
+                        if (data.etaSeconds !== null && data.etaSeconds !== undefined) text += ', ~' + data.etaSeconds + 's left';
+                        badge.innerHTML = '<i class="fas fa-spinner fa-spin"></i>' + text;
+                    }
+                }).catch(error => console.error('Error:', error));
+            });
+            setTimeout(checkProcessingFiles, 2000);
         }
         document.addEventListener('DOMContentLoaded', checkProcessingFiles);
     </script>
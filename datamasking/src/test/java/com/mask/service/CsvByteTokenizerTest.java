@@ -0,0 +1,380 @@
+package com.mask.service;
+
+import com.mask.service.MaskingPlan.ColumnMasker;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the byte tokenizer, its raw copies and the parallel masker against commons-csv,
+ * which the sequential path and the fallback for rejected chunks still use
+ */
+class CsvByteTokenizerTest {
+
+    private static final CSVFormat RECORD_FORMAT = CSVFormat.Builder.create(CSVFormat.DEFAULT)
+        .setTrim(true)
+        .setIgnoreSurroundingSpaces(true)
+        .build();
+
+    private static final CSVFormat HEADER_FORMAT = CSVFormat.Builder.create(RECORD_FORMAT)
+        .setHeader()
+        .setSkipHeaderRecord(true)
+        .setIgnoreHeaderCase(true)
+        .build();
+
+    // Delimiters, quotes, ASCII and Unicode whitespace, chars the printer quotes, and broken UTF-8
+    private static final byte[][] PIECES = pieces(
+        "a", "b", ",", "\n", "\r", " ", "\t", "\u000B", "\u001F", "\u0001", "\u00A0", "\u1680", "\u2000",
+        "\u2007", "\u200A", "\u2028", "\u205F", "\u3000", "\u00E9", "#", "!", "x", "9", "\"", "\"\"",
+        "\uD83D\uDE00", "xy");
+    private static final int[][] BROKEN_UTF8 = {
+        {0x80}, {0xC3}, {0xE2, 0x80}, {0xED, 0xA0, 0x80}, {0xF0, 0x9F, 0x98}, {0xFF}, {0xE0, 0x80, 0x80},
+        {0xC0, 0xAF}, {0xF4, 0x90, 0x80, 0x80}, {0xE2}, {0xE1, 0x9A}};
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void matchesCommonsCsvOnRandomBytes() throws Exception {
+        Random random = new Random(20_240_601);
+        byte[][] pieces = withBrokenUtf8();
+        for (int iteration = 0; iteration < 100_000; iteration++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            int length = random.nextInt(30);
+            for (int i = 0; i < length; i++) {
+                bytes.write(pieces[random.nextInt(pieces.length)]);
+            }
+            if (random.nextBoolean()) {
+                bytes.write('\n');
+            }
+            byte[] data = bytes.toByteArray();
+            // The tokenizer works on a slice of a larger array
+            int offset = random.nextInt(3);
+            byte[] padded = new byte[offset + data.length + 1];
+            System.arraycopy(data, 0, padded, offset, data.length);
+            padded[padded.length - 1] = '"';
+
+            assertSameRecords(new String(data, StandardCharsets.UTF_8), padded, offset, padded.length - 1);
+        }
+    }
+
+    @Test
+    void copiesRawOnlyWhatPrintsTheSame() throws Exception {
+        String[] inputs = {
+            "plain,values,here\n",
+            "\"quoted\",\"with \"\"escapes\"\"\",\"a,b\"\r\n",
+            "  padded  ,\ttabbed\t,\u3000ideographic\u3000,\u2000en quad\u2000\r\n",
+            "#hash,!bang,a#b,a\"b,\u00A0nbsp\u00A0,\u2007figure\u2007\n",
+            "\u2028separator,\u1680ogham,\u205Fmath,\u000Bvt\u000B,\u001Fus\u001F\n",
+            "\u00E9,\uD83D\uDE00,x\uD83D\uDE00y\r",
+            ",,\n",
+            "  \"spaced quote\"  ,\u3000\"wide\"\u3000\n",
+            "trailing\r\n\r\n\n\nafter blank lines"
+        };
+        for (String input : inputs) {
+            byte[] data = input.getBytes(StandardCharsets.UTF_8);
+            assertSameRecords(input, data, 0, data.length);
+        }
+    }
+
+    @Test
+    void rejectsWhatCommonsCsvRejects() {
+        String[] inputs = {"\"unterminated\n", "\"closed\"then text\n", "a,\"b\"\u00A0,c\n"};
+        for (String input : inputs) {
+            byte[] data = input.getBytes(StandardCharsets.UTF_8);
+            assertThrows(IOException.class, () -> readWithTokenizer(data, 0, data.length), input);
+            assertThrows(Exception.class, () -> readWithCommons(input), input);
+        }
+    }
+
+    @Test
+    void encodesLikeTheJdk() throws Exception {
+        Random random = new Random(7);
+        String chars = "a\u00E9\u3000\uD83D\uDE00\uD800\uDC00x";
+        for (int iteration = 0; iteration < 20_000; iteration++) {
+            StringBuilder text = new StringBuilder();
+            int length = random.nextInt(20);
+            for (int i = 0; i < length; i++) {
+                text.append(chars.charAt(random.nextInt(chars.length())));
+            }
+
+            byte[] expected;
+            try {
+                ByteBuffer encoded = StandardCharsets.UTF_8.newEncoder().encode(CharBuffer.wrap(text));
+                expected = new byte[encoded.remaining()];
+                encoded.get(expected);
+            } catch (IOException e) {
+                expected = null;
+            }
+
+            byte[] actual;
+            try {
+                // Both append paths, split at a random point which may fall inside a surrogate pair
+                Utf8Output output = new Utf8Output(1);
+                int split = random.nextInt(text.length() + 1);
+                output.append(text, 0, split);
+                for (int i = split; i < text.length(); i++) {
+                    output.append(text.charAt(i));
+                }
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                output.writeTo(bytes);
+                actual = bytes.toByteArray();
+            } catch (IOException e) {
+                actual = null;
+            }
+            assertArrayEquals(expected, actual, text.toString());
+        }
+    }
+
+    @Test
+    void cutsChunksOnlyBetweenRecords() throws Exception {
+        Random random = new Random(11);
+        for (int iteration = 0; iteration < 2_000; iteration++) {
+            String text = randomCsv(random, 1 + random.nextInt(40));
+            byte[] data = text.getBytes(StandardCharsets.UTF_8);
+            int chunkSize = 1 + random.nextInt(64);
+
+            ParallelCsvMasker.RecordAlignedChunker chunker =
+                new ParallelCsvMasker.RecordAlignedChunker(new ByteArrayInputStream(data), chunkSize);
+            List<List<String>> records = new ArrayList<>();
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            byte[] chunk;
+            while ((chunk = chunker.next()) != null) {
+                joined.write(chunk);
+                records.addAll(readWithCommons(new String(chunk, StandardCharsets.UTF_8)));
+            }
+
+            assertArrayEquals(data, joined.toByteArray());
+            assertEquals(readWithCommons(text), records, text);
+        }
+    }
+
+    @Test
+    void cutsChunksAtBareCarriageReturns() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            text.append(i).append(",\"a\rb\",x").append(i % 97 == 0 ? "\r\n" : "\r");
+        }
+        byte[] data = text.toString().getBytes(StandardCharsets.UTF_8);
+        ParallelCsvMasker.RecordAlignedChunker chunker =
+            new ParallelCsvMasker.RecordAlignedChunker(new ByteArrayInputStream(data), 256);
+        ByteArrayOutputStream joined = new ByteArrayOutputStream();
+        int chunks = 0;
+        byte[] chunk;
+        while ((chunk = chunker.next()) != null) {
+            chunks++;
+            assertTrue(chunk.length <= 256, "chunk of " + chunk.length + " bytes");
+            // Never between the CR and LF of a CRLF
+            assertTrue(chunk[0] != '\n');
+            joined.write(chunk);
+        }
+        assertArrayEquals(data, joined.toByteArray());
+        assertTrue(chunks > data.length / 256, chunks + " chunks");
+    }
+
+    @Test
+    void findsTheHeaderAfterBlankLines() {
+        for (String text : new String[] {"a,b\nx,y\n", "\n\r\n\ra,b\nx,y\n", "a,b\rx,y\r", "\r\ra,b\r\nx,y", "a,b"}) {
+            byte[] chunk = text.getBytes(StandardCharsets.UTF_8);
+            int end = ParallelCsvMasker.RecordAlignedChunker.firstRecordEnd(chunk);
+            String rest = text.substring(end);
+            assertTrue(rest.isEmpty() || rest.startsWith("x,y"), escape(text) + " ends at " + end);
+        }
+        assertTrue(ParallelCsvMasker.RecordAlignedChunker.isBlank("\r\n\n\r".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void masksChunkedFilesLikeCommonsCsv() throws Exception {
+        ParallelCsvMasker masker = new ParallelCsvMasker();
+        ReflectionTestUtils.setField(masker, "workers", 2);
+        ReflectionTestUtils.setField(masker, "chunkSize", 64 * 1024);
+        // Kept as is (copied raw where possible), masked into a buffer, and masked to a String
+        MaskingPlan plan = MaskingPlan.compile(Map.of("b", "FULL_MASK", "c", "HASH_MASK"), null);
+        Random random = new Random(3);
+        try {
+            for (int file = 0; file < 6; file++) {
+                String text = "A,b,c,d\r\n" + randomCsv(random, 6_000 + random.nextInt(6_000));
+                if (file == 4) {
+                    // Blank lines before the header, which commons-csv skips
+                    text = "\r\n\n\r" + text;
+                } else if (file == 5) {
+                    // Old Mac line endings only, so no chunk can be cut at an LF
+                    text = text.replace("\r\n", "\r").replace('\n', '\r');
+                }
+                Path input = dir.resolve("in" + file + ".csv");
+                Path output = dir.resolve("out" + file + ".csv");
+                Files.write(input, text.getBytes(StandardCharsets.UTF_8));
+
+                long records = masker.mask(input, output, plan, new MaskingProgress(Files.size(input)));
+
+                String expected = maskWithCommons(text, plan);
+                assertEquals(readWithCommons(text).size() - 1, records);
+                assertEquals(expected, Files.readString(output, StandardCharsets.UTF_8));
+            }
+        } finally {
+            masker.shutdown();
+        }
+    }
+
+    private static void assertSameRecords(String text, byte[] data, int offset, int limit) throws IOException {
+        List<List<String>> expected;
+        try {
+            expected = readWithCommons(text);
+        } catch (Exception | Error e) {
+            // commons-csv reports some malformed input as an unchecked exception
+            assertThrows(IOException.class, () -> readWithTokenizer(data, offset, limit), escape(text));
+            return;
+        }
+        assertEquals(expected, readWithTokenizer(data, offset, limit), escape(text));
+
+        CsvByteTokenizer fields = new CsvByteTokenizer(data, offset, limit);
+        while (fields.nextRecord()) {
+            for (int i = 0; i < fields.size(); i++) {
+                if (!fields.isPlain(i)) {
+                    continue;
+                }
+                Utf8Output raw = new Utf8Output(8);
+                fields.copyRaw(i, raw);
+                ByteArrayOutputStream copied = new ByteArrayOutputStream();
+                raw.writeTo(copied);
+                for (boolean first : new boolean[] {true, false}) {
+                    StringBuilder printed = new StringBuilder();
+                    CSVFormat.DEFAULT.print(fields.value(i), printed, first);
+                    // A value that isn't first is printed after its delimiter
+                    String value = first ? printed.toString() : printed.substring(1);
+                    assertEquals(value, copied.toString(StandardCharsets.UTF_8), escape(text));
+                }
+            }
+        }
+    }
+
+    private static List<List<String>> readWithTokenizer(byte[] data, int offset, int limit) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        CsvByteTokenizer fields = new CsvByteTokenizer(data, offset, limit);
+        while (fields.nextRecord()) {
+            List<String> record = new ArrayList<>();
+            for (int i = 0; i < fields.size(); i++) {
+                record.add(fields.value(i));
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static List<List<String>> readWithCommons(String text) throws IOException {
+        List<List<String>> records = new ArrayList<>();
+        try (CSVParser parser = RECORD_FORMAT.parse(new StringReader(text))) {
+            for (CSVRecord record : parser) {
+                records.add(record.toList());
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Whole-file masking as the sequential path does it
+     */
+    private static String maskWithCommons(String text, MaskingPlan plan) throws IOException {
+        StringBuilder output = new StringBuilder();
+        try (CSVParser parser = HEADER_FORMAT.parse(new StringReader(text));
+             CSVPrinter printer = new CSVPrinter(output, CSVFormat.DEFAULT)) {
+            List<String> headers = new ArrayList<>(parser.getHeaderMap().keySet());
+            ColumnMasker[] maskers = plan.bind(headers);
+            printer.printRecord(headers);
+            for (CSVRecord record : parser) {
+                for (int i = 0; i < maskers.length; i++) {
+                    int sourceIndex = parser.getHeaderMap().get(headers.get(i));
+                    printer.print(maskers[i].mask(sourceIndex < record.size() ? record.get(sourceIndex) : ""));
+                }
+                printer.println();
+            }
+        }
+        return output.toString();
+    }
+
+    /**
+     * Well-formed records with quoted line breaks, padding around quoted fields, short and
+     * blank lines and mixed line endings
+     */
+    private static String randomCsv(Random random, int records) {
+        String[] padding = {"", "", " ", "\t", "\u3000", "  "};
+        String[] lineEnds = {"\n", "\r\n", "\r\n", "\r", "\n\n", "\r\n\r\n"};
+        StringBuilder text = new StringBuilder();
+        for (int r = 0; r < records; r++) {
+            int fields = 1 + random.nextInt(5);
+            for (int f = 0; f < fields; f++) {
+                if (f > 0) {
+                    text.append(',');
+                }
+                StringBuilder value = new StringBuilder();
+                int length = random.nextInt(8);
+                for (int i = 0; i < length; i++) {
+                    value.append(new String(PIECES[random.nextInt(PIECES.length)], StandardCharsets.UTF_8));
+                }
+                String field = value.toString();
+                boolean quoted = random.nextInt(3) == 0 || field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0;
+                if (quoted) {
+                    String pad = padding[random.nextInt(padding.length)];
+                    text.append(pad).append('"').append(field.replace("\"", "\"\"")).append('"').append(pad);
+                } else {
+                    text.append(field);
+                }
+            }
+            text.append(lineEnds[random.nextInt(lineEnds.length)]);
+        }
+        return text.toString();
+    }
+
+    private static byte[][] pieces(String... values) {
+        byte[][] pieces = new byte[values.length][];
+        for (int i = 0; i < values.length; i++) {
+            pieces[i] = values[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return pieces;
+    }
+
+    private static byte[][] withBrokenUtf8() {
+        byte[][] pieces = Arrays.copyOf(PIECES, PIECES.length + BROKEN_UTF8.length);
+        for (int i = 0; i < BROKEN_UTF8.length; i++) {
+            byte[] bytes = new byte[BROKEN_UTF8[i].length];
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = (byte) BROKEN_UTF8[i][j];
+            }
+            pieces[PIECES.length + i] = bytes;
+        }
+        return pieces;
+    }
+
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : text.toCharArray()) {
+            escaped.append(c < 0x20 || c > 0x7E ? String.format("\\u%04X", (int) c) : String.valueOf(c));
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.mask.service;
+
+import com.mask.model.UploadedFile;
+import com.mask.repository.UploadedFileRepository;
+import com.mask.util.MaskingRandom;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MaskingJobServiceTest {
+
+    @TempDir
+    Path dir;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private MaskingJobService jobs;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MaskingService maskingService = mock(MaskingService.class);
+        when(maskingService.maskFile(any(Path.class), anyString(), anyMap(), any(), anyString(),
+                any(MaskingProgress.class), any(MaskingRandom.class)))
+            .thenAnswer(invocation -> {
+                started.countDown();
+                release.await(1, TimeUnit.MINUTES);
+                return invocation.getArgument(0);
+            });
+        UploadedFileRepository repository = mock(UploadedFileRepository.class);
+        when(repository.findById(any())).thenReturn(Optional.empty());
+
+        jobs = new MaskingJobService();
+        ReflectionTestUtils.setField(jobs, "maskingService", maskingService);
+        ReflectionTestUtils.setField(jobs, "repository", repository);
+        ReflectionTestUtils.setField(jobs, "workers", 2);
+        ReflectionTestUtils.setField(jobs, "queueCapacity", 10);
+        jobs.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        jobs.shutdown();
+    }
+
+    @Test
+    void rejectsASecondJobForTheSameFile() throws Exception {
+        UploadedFile file = uploadedFile(1L);
+        Path stored = Files.writeString(dir.resolve("a.csv"), "id\n1\n");
+
+        jobs.submit(file, stored, Map.of(), "FULL_MASK", "a_masked.csv", "owner@example.com");
+        assertTrue(started.await(1, TimeUnit.MINUTES));
+        MaskingProgress running = jobs.getProgress(1L).orElseThrow();
+
+        assertThrows(IllegalStateException.class,
+            () -> jobs.submit(file, stored, Map.of(), "FULL_MASK", "a_masked.csv", "owner@example.com"));
+        // The running job keeps its progress
+        assertSame(running, jobs.getProgress(1L).orElseThrow());
+
+        release.countDown();
+        for (int i = 0; i < 100 && jobs.isActive(1L); i++) {
+            Thread.sleep(20);
+        }
+        assertFalse(jobs.isActive(1L));
+    }
+
+    private static UploadedFile uploadedFile(Long id) {
+        UploadedFile file = new UploadedFile();
+        file.setId(id);
+        file.setOriginalFileName("a.csv");
+        file.setMaskingSeed(42L);
+        return file;
+    }
+}
@@ -0,0 +1,60 @@
+package com.mask.service;
+
+import com.mask.util.MaskingRandom;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MaskingServiceTest {
+
+    // CRLF line breaks and characters that take two to four bytes in UTF-8
+    private static final String TEXT = "caf\u00E9 r\u00E9sum\u00E9\r\n\u4F60\u597D\r\n\uD83D\uDE00 smile\r\nlast line";
+
+    @TempDir
+    Path dir;
+
+    private MaskingService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new MaskingService();
+        ReflectionTestUtils.setField(service, "techniqueRegistry", TechniqueRegistry.builtIn());
+        ReflectionTestUtils.setField(service, "textBufferSize", 16);
+        ReflectionTestUtils.setField(service, "parallelCsv", false);
+    }
+
+    @Test
+    void reportsTextProgressInInputBytes() throws Exception {
+        Path input = Files.writeString(dir.resolve("notes.txt"), TEXT, StandardCharsets.UTF_8);
+        MaskingProgress progress = mask(input, "notes.txt");
+
+        assertEquals(4, progress.getRowsProcessed());
+        assertEquals(Files.size(input), progress.getBytesProcessed());
+    }
+
+    @Test
+    void reportsCsvProgressInInputBytes() throws Exception {
+        Path input = Files.writeString(dir.resolve("people.csv"),
+            "name,city\r\n" + TEXT.replace(" ", ",").replace("last line", "last,line") + "\r\n",
+            StandardCharsets.UTF_8);
+        MaskingProgress progress = mask(input, "people.csv");
+
+        assertEquals(4, progress.getRowsProcessed());
+        assertEquals(Files.size(input), progress.getBytesProcessed());
+    }
+
+    private MaskingProgress mask(Path input, String name) throws Exception {
+        MaskingProgress progress = new MaskingProgress(Files.size(input));
+        service.maskFile(input, name, Map.of(), "FULL_MASK", "masked_" + name, progress,
+            MaskingRandom.seeded(1L, null));
+        return progress;
+    }
+}
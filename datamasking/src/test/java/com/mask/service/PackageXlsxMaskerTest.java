@@ -0,0 +1,182 @@
+package com.mask.service;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Masks workbooks at the package level and through the streaming path, which share
+ * nothing but the cell reading, and compares what a reader of the two outputs sees
+ */
+class PackageXlsxMaskerTest {
+
+    // Deterministic techniques only, so both paths must give the same text
+    private static final Map<String, String> TECHNIQUES = Map.of(
+        "name", "FULL_MASK", "email", "HASH_MASK", "city", "PARTIAL_MASK", "total", "FULL_MASK");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void masksLikeTheStreamingPath() throws Exception {
+        Path input = dir.resolve("people.xlsx");
+        writeWorkbook(input);
+        try (OPCPackage pkg = OPCPackage.open(input.toFile(), PackageAccess.READ)) {
+            assertFalse(pkg.getPartsByContentType(XSSFRelation.CALC_CHAIN.getContentType()).isEmpty());
+        }
+
+        Path packageOutput = dir.resolve("package.xlsx");
+        new PackageXlsxMasker().mask(input, packageOutput, MaskingPlan.compile(TECHNIQUES, null),
+            new MaskingProgress(Files.size(input)));
+
+        Path streamingOutput = dir.resolve("streaming.xlsx");
+        StreamingXlsxMasker streaming = new StreamingXlsxMasker();
+        ReflectionTestUtils.setField(streaming, "rowWindow", 100);
+        streaming.mask(input, streamingOutput, MaskingPlan.compile(TECHNIQUES, null),
+            new MaskingProgress(Files.size(input)));
+
+        Map<String, List<List<String>>> masked = read(packageOutput);
+        assertEquals(read(streamingOutput), masked);
+
+        List<List<String>> people = masked.get("people");
+        // A string in a masked and an unmasked column is masked only in the masked one
+        assertEquals("*****", people.get(1).get(0));
+        assertEquals("Alice", people.get(1).get(2));
+        // A string in columns with different techniques gets each column's own
+        assertEquals("*****", people.get(2).get(0));
+        assertNotEquals("*****", people.get(2).get(3));
+        assertNotEquals("Paris", people.get(2).get(3));
+        // Masked formulas become text of their cached result, read as "20.0"; the unmasked column keeps its numbers
+        assertEquals("****", people.get(1).get(5));
+        assertEquals("10", people.get(1).get(4));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(packageOutput.toFile())) {
+            XSSFSheet sheet = workbook.getSheet("people");
+            assertEquals(CellType.STRING, sheet.getRow(1).getCell(5).getCellType());
+            assertEquals(CellType.NUMERIC, sheet.getRow(1).getCell(4).getCellType());
+            assertTrue(workbook.getPackage().getPartsByContentType(XSSFRelation.CALC_CHAIN.getContentType()).isEmpty());
+        }
+    }
+
+    /**
+     * Two sheets whose shared strings are used by masked and unmasked columns, with a
+     * formula column and its calculation chain
+     */
+    private static void writeWorkbook(Path path) throws Exception {
+        Path plain = path.resolveSibling("plain.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet people = workbook.createSheet("people");
+            addRow(people, 0, "name", "email", "note", "city", "amount", "total");
+            Object[][] rows = {
+                {"Alice", "alice@example.com", "Alice", "Lyon", 10},
+                {"Paris", "paris@example.com", "city", "Paris", 25},
+                {"Bob", "bob@example.com", "name", "Alice", 7},
+            };
+            for (int r = 0; r < rows.length; r++) {
+                Row row = addRow(people, r + 1, rows[r]);
+                row.createCell(5).setCellFormula("E" + (r + 2) + "*2");
+            }
+
+            Sheet other = workbook.createSheet("other");
+            addRow(other, 0, "id", "name", "city");
+            addRow(other, 1, 1, "Bob", "Lyon");
+            addRow(other, 2, 2, "Lyon", "Bob");
+
+            // Stores the formulas' cached values, which is what the maskers read
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            try (OutputStream out = Files.newOutputStream(plain)) {
+                workbook.write(out);
+            }
+        }
+        addCalcChain(plain, path);
+    }
+
+    private static Row addRow(Sheet sheet, int rowNum, Object... values) {
+        Row row = sheet.createRow(rowNum);
+        for (int c = 0; c < values.length; c++) {
+            if (values[c] instanceof Integer number) {
+                row.createCell(c).setCellValue(number);
+            } else {
+                row.createCell(c).setCellValue((String) values[c]);
+            }
+        }
+        return row;
+    }
+
+    // POI only keeps a calculation chain it read, so add one the way Excel writes it
+    private static void addCalcChain(Path input, Path output) throws Exception {
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(input));
+             ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(output))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String xml = new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+                if (entry.getName().equals("[Content_Types].xml")) {
+                    xml = xml.replace("</Types>", "<Override PartName=\"/xl/calcChain.xml\" ContentType=\""
+                        + XSSFRelation.CALC_CHAIN.getContentType() + "\"/></Types>");
+                } else if (entry.getName().equals("xl/_rels/workbook.xml.rels")) {
+                    xml = xml.replace("</Relationships>", "<Relationship Id=\"rIdCalc\" Type=\""
+                        + XSSFRelation.CALC_CHAIN.getRelation() + "\" Target=\"calcChain.xml\"/></Relationships>");
+                }
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                out.write(xml.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+            out.putNextEntry(new ZipEntry("xl/calcChain.xml"));
+            out.write(("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+                + "<calcChain xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+                + "<c r=\"F2\" i=\"1\"/><c r=\"F3\"/><c r=\"F4\"/></calcChain>").getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+        }
+    }
+
+    /**
+     * Displayed text of every cell by sheet name, in sheet order
+     */
+    private static Map<String, List<List<String>>> read(Path path) throws Exception {
+        Map<String, List<List<String>>> sheets = new LinkedHashMap<>();
+        DataFormatter formatter = new DataFormatter();
+        try (InputStream in = Files.newInputStream(path); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            for (Sheet sheet : workbook) {
+                List<List<String>> rows = new ArrayList<>();
+                for (Row row : sheet) {
+                    List<String> cells = new ArrayList<>();
+                    for (int c = 0; c < row.getLastCellNum(); c++) {
+                        Cell cell = row.getCell(c);
+                        cells.add(cell == null ? "" : formatter.formatCellValue(cell));
+                    }
+                    rows.add(cells);
+                }
+                sheets.put(sheet.getSheetName(), rows);
+            }
+        }
+        return sheets;
+    }
+}
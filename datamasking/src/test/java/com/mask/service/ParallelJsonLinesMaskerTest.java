@@ -0,0 +1,194 @@
+package com.mask.service;
+
+import com.mask.util.MaskingRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelJsonLinesMaskerTest {
+
+    private static final String LINE_CHARS = "{}\"ab:, \t\u00E9\u3000";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void cutsAtTheLastLineEndWithinTheChunkSize() throws Exception {
+        assertEquals(List.of("a\nbb\n", "ccc\n"), chunks("a\nbb\nccc\n", 5));
+        assertEquals(List.of("a\nbb\n", "ccc\n", "d"), chunks("a\nbb\nccc\nd", 5));
+        // A line longer than the chunk size is a chunk of its own
+        assertEquals(List.of("a\n", "x".repeat(20) + "\n", "y\n"), chunks("a\n" + "x".repeat(20) + "\ny\n", 8));
+        assertEquals(List.of("x".repeat(20)), chunks("x".repeat(20), 8));
+        // CRLF stays together, since cuts only follow the LF
+        assertEquals(List.of("a\r\n", "b\r\n", "c"), chunks("a\r\nb\r\nc", 4));
+        // A trailing line without a line break comes last, even when everything fits one chunk
+        assertEquals(List.of("a\n", "b"), chunks("a\nb", 64));
+        assertEquals(List.of(), chunks("", 8));
+    }
+
+    @Test
+    void cutsOnlyAtLineEnds() throws Exception {
+        Random random = new Random(7);
+        for (int iteration = 0; iteration < 2_000; iteration++) {
+            byte[] data = randomLines(random, 1 + random.nextInt(30), 40).getBytes(StandardCharsets.UTF_8);
+            int chunkSize = 1 + random.nextInt(64);
+
+            ParallelJsonLinesMasker.LineAlignedChunker chunker =
+                new ParallelJsonLinesMasker.LineAlignedChunker(new TrickleInputStream(data, random), chunkSize);
+            ByteArrayOutputStream joined = new ByteArrayOutputStream();
+            byte[] chunk;
+            while ((chunk = chunker.next()) != null) {
+                int start = joined.size();
+                joined.write(chunk);
+                int end = joined.size();
+                assertTrue(chunk.length > 0);
+                if (end == data.length) {
+                    continue;
+                }
+                assertEquals('\n', chunk[chunk.length - 1]);
+                if (chunk.length > chunkSize) {
+                    // Only a single line too long for a chunk goes past the size
+                    assertEquals(chunk.length - 1, indexOf(data, start, end, (byte) '\n') - start);
+                } else {
+                    // Cut at the last line end that fits, whatever the reads returned
+                    int nextLineEnd = indexOf(data, end, data.length, (byte) '\n');
+                    assertTrue(nextLineEnd < 0 || nextLineEnd >= start + chunkSize);
+                }
+            }
+            assertArrayEquals(data, joined.toByteArray());
+            assertEquals(data.length, chunker.getBytesRead());
+        }
+    }
+
+    @Test
+    void masksTheSameOnOneOrManyWorkers() throws Exception {
+        Random random = new Random(5);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 12_000; i++) {
+            text.append("{\"id\":").append(i)
+                .append(",\"name\":\"user").append(random.nextInt(1_000))
+                .append("\",\"email\":\"u").append(i).append("@example.com\"")
+                .append(",\"tags\":[\"a\",\"b\"],\"nested\":{\"name\":\"n").append(i).append("\"}}")
+                .append(random.nextInt(10) == 0 ? "\r\n" : "\n");
+            if (random.nextInt(50) == 0) {
+                text.append("  \n");
+            }
+        }
+        // Last record without a line break
+        text.append("{\"id\":-1,\"name\":\"last\"}");
+        Path input = dir.resolve("records.jsonl");
+        Files.writeString(input, text, StandardCharsets.UTF_8);
+        // Random techniques, so output only repeats when every chunk draws from the same source
+        MaskingPlan plan = MaskingPlan.compile(Map.of("name", "RANDOM_REPLACE", "email", "FULL_MASK"), null);
+
+        List<String> outputs = new ArrayList<>();
+        for (int workers : new int[] {1, 4}) {
+            ParallelJsonLinesMasker masker = new ParallelJsonLinesMasker();
+            ReflectionTestUtils.setField(masker, "workers", workers);
+            // The smallest chunk size allowed, so the file spans several chunks
+            ReflectionTestUtils.setField(masker, "chunkSize", 1);
+            Path output = dir.resolve("masked" + workers + ".jsonl");
+            MaskingProgress progress = new MaskingProgress(Files.size(input));
+            MaskingRandom previous = MaskingRandom.install(MaskingRandom.seeded(42L, null));
+            try {
+                assertEquals(12_001, masker.mask(input, output, plan, progress));
+            } finally {
+                MaskingRandom.install(previous);
+                masker.shutdown();
+            }
+            assertEquals(Files.size(input), progress.getBytesProcessed());
+            outputs.add(Files.readString(output, StandardCharsets.UTF_8));
+        }
+
+        assertTrue(Files.size(input) > 3 * 64 * 1024);
+        assertEquals(outputs.get(0), outputs.get(1));
+        String[] lines = outputs.get(0).split("\n");
+        assertEquals(12_001, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":\"0\",\"name\":\""), lines[0]);
+        assertTrue(lines[0].contains("\"email\":\"" + "*".repeat("u0@example.com".length()) + "\""), lines[0]);
+    }
+
+    private static List<String> chunks(String text, int chunkSize) throws IOException {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        ParallelJsonLinesMasker.LineAlignedChunker chunker =
+            new ParallelJsonLinesMasker.LineAlignedChunker(new TrickleInputStream(data, new Random(1)), chunkSize);
+        List<String> chunks = new ArrayList<>();
+        byte[] chunk;
+        while ((chunk = chunker.next()) != null) {
+            chunks.add(new String(chunk, StandardCharsets.UTF_8));
+        }
+        return chunks;
+    }
+
+    /**
+     * Lines of up to maxLength chars, some far longer than the chunk, with LF and CRLF
+     * endings, blank lines, and sometimes no line break at the end
+     */
+    private static String randomLines(Random random, int lines, int maxLength) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            int length = random.nextInt(8) == 0 ? random.nextInt(maxLength * 4) : random.nextInt(maxLength);
+            for (int j = 0; j < length; j++) {
+                text.append(LINE_CHARS.charAt(random.nextInt(LINE_CHARS.length())));
+            }
+            if (i < lines - 1 || random.nextBoolean()) {
+                text.append(random.nextInt(3) == 0 ? "\r\n" : "\n");
+            }
+        }
+        return text.toString();
+    }
+
+    private static int indexOf(byte[] data, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (data[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a few bytes per read, as a network or decompressing stream may
+     */
+    private static final class TrickleInputStream extends InputStream {
+        private final byte[] data;
+        private final Random random;
+        private int position;
+
+        private TrickleInputStream(byte[] data, Random random) {
+            this.data = data;
+            this.random = random;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, 1 + random.nextInt(7)), data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+    }
+}
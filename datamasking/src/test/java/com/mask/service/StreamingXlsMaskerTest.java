@@ -0,0 +1,129 @@
+package com.mask.service;
+
+import org.apache.poi.hssf.usermodel.HSSFRow;
+import org.apache.poi.hssf.usermodel.HSSFSheet;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingXlsMaskerTest {
+
+    // Far below what one sheet of these rows takes when held in memory
+    private static final String SMALL_HEAP = "-Xmx40m";
+    private static final int ROWS = 65_535;
+    private static final int COLUMNS = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void masksManyRowSheetInSmallHeap() throws Exception {
+        Path input = dir.resolve("many.xls");
+        try (HSSFWorkbook workbook = new HSSFWorkbook()) {
+            HSSFSheet sheet = workbook.createSheet("data");
+            HSSFRow header = sheet.createRow(0);
+            for (int c = 0; c < COLUMNS; c++) {
+                header.createCell(c).setCellValue("col" + c);
+            }
+            for (int r = 1; r <= ROWS; r++) {
+                HSSFRow row = sheet.createRow(r);
+                for (int c = 0; c < COLUMNS; c++) {
+                    row.createCell(c).setCellValue(r * 10.0 + c);
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(input)) {
+                workbook.write(out);
+            }
+        }
+        Path output = dir.resolve("many_masked.xls");
+
+        Path log = dir.resolve("child.log");
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process child = new ProcessBuilder(java, SMALL_HEAP, "-cp", System.getProperty("java.class.path"),
+                SmallHeapRun.class.getName(), input.toString(), output.toString())
+            .redirectErrorStream(true)
+            .redirectOutput(log.toFile())
+            .start();
+        assertTrue(child.waitFor(5, TimeUnit.MINUTES), "masking did not finish");
+        assertEquals(0, child.exitValue(), () -> readLog(log));
+
+        try (Workbook masked = new HSSFWorkbook(output.toFile().toURI().toURL().openStream())) {
+            Sheet sheet = masked.getSheetAt(0);
+            assertEquals(ROWS, sheet.getLastRowNum());
+            assertEquals("col3", sheet.getRow(0).getCell(3).getStringCellValue());
+            Row last = sheet.getRow(ROWS);
+            assertEquals(COLUMNS, last.getLastCellNum());
+            assertEquals("*".repeat(String.valueOf(ROWS * 10 + 9).length()), last.getCell(9).getStringCellValue());
+        }
+    }
+
+    @Test
+    void readsRunsOfBlankCells() throws Exception {
+        Path input = dir.resolve("blanks.xls");
+        try (HSSFWorkbook workbook = new HSSFWorkbook()) {
+            HSSFSheet sheet = workbook.createSheet("data");
+            HSSFRow header = sheet.createRow(0);
+            for (int c = 0; c < 4; c++) {
+                header.createCell(c).setCellValue("col" + c);
+            }
+            // Styled blank cells next to each other are stored as one MULBLANK record
+            HSSFRow row = sheet.createRow(1);
+            row.createCell(0).setCellValue("a");
+            row.createCell(1).setCellStyle(workbook.createCellStyle());
+            row.createCell(2).setCellStyle(workbook.createCellStyle());
+            row.createCell(3).setCellValue("d");
+            try (OutputStream out = Files.newOutputStream(input)) {
+                workbook.write(out);
+            }
+        }
+        Path output = dir.resolve("blanks_masked.xls");
+
+        new StreamingXlsMasker().mask(input, output, MaskingPlan.compile(Map.of(), "FULL_MASK"),
+            new MaskingProgress(Files.size(input)));
+
+        try (Workbook masked = new HSSFWorkbook(output.toFile().toURI().toURL().openStream())) {
+            Row row = masked.getSheetAt(0).getRow(1);
+            assertEquals(4, row.getLastCellNum());
+            assertEquals("*", row.getCell(0).getStringCellValue());
+            assertEquals("", row.getCell(1).getStringCellValue());
+            assertEquals("", row.getCell(2).getStringCellValue());
+            assertEquals("*", row.getCell(3).getStringCellValue());
+        }
+    }
+
+    private static String readLog(Path log) {
+        try {
+            List<String> lines = Files.readAllLines(log, StandardCharsets.UTF_8);
+            return String.join("\n", lines.subList(Math.max(0, lines.size() - 20), lines.size()));
+        } catch (Exception e) {
+            return e.toString();
+        }
+    }
+
+    /**
+     * Masks one file in a JVM of its own, so the heap limit applies to masking alone
+     */
+    static final class SmallHeapRun {
+        public static void main(String[] args) throws Exception {
+            File input = new File(args[0]);
+            new StreamingXlsMasker().mask(input.toPath(), Paths.get(args[1]),
+                MaskingPlan.compile(Map.of(), "FULL_MASK"), new MaskingProgress(input.length()));
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.mask.service;
+
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingXlsxMaskerTest {
+
+    // Not in alphabetical order, so sheets can't come out sorted by accident
+    private static final String[] SHEETS = {"zeta", "alpha", "empty", "mid"};
+    private static final int[] ROWS = {120, 3, 0, 40};
+
+    @TempDir
+    Path dir;
+
+    private final StreamingXlsxMasker masker = new StreamingXlsxMasker();
+
+    @AfterEach
+    void tearDown() {
+        masker.shutdown();
+    }
+
+    @Test
+    void assemblesSheetsMaskedInParallel() throws Exception {
+        Path input = dir.resolve("sheets.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            for (int s = 0; s < SHEETS.length; s++) {
+                Sheet sheet = workbook.createSheet(SHEETS[s]);
+                if (ROWS[s] == 0) {
+                    continue;
+                }
+                Row header = sheet.createRow(0);
+                header.createCell(0).setCellValue("id");
+                header.createCell(1).setCellValue("name");
+                // Sheets are as wide as their position, so each has its own dimension
+                for (int c = 2; c < 2 + s; c++) {
+                    header.createCell(c).setCellValue("extra" + c);
+                }
+                for (int r = 1; r <= ROWS[s]; r++) {
+                    Row row = sheet.createRow(r);
+                    row.createCell(0).setCellValue(r);
+                    row.createCell(1).setCellValue(SHEETS[s] + "-" + r);
+                    for (int c = 2; c < 2 + s; c++) {
+                        row.createCell(c).setCellValue("x" + r * c);
+                    }
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(input)) {
+                workbook.write(out);
+            }
+        }
+
+        ReflectionTestUtils.setField(masker, "rowWindow", 100);
+        ReflectionTestUtils.setField(masker, "workers", 2);
+        ReflectionTestUtils.setField(masker, "parallelSheets", true);
+        Path parallel = dir.resolve("parallel.xlsx");
+        masker.mask(input, parallel, MaskingPlan.compile(Map.of("name", "FULL_MASK"), null),
+            new MaskingProgress(Files.size(input)));
+
+        ReflectionTestUtils.setField(masker, "parallelSheets", false);
+        Path sequential = dir.resolve("sequential.xlsx");
+        masker.mask(input, sequential, MaskingPlan.compile(Map.of("name", "FULL_MASK"), null),
+            new MaskingProgress(Files.size(input)));
+
+        try (InputStream in = Files.newInputStream(parallel); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            assertEquals(SHEETS.length, workbook.getNumberOfSheets());
+            String[] dimensions = {"A1:B121", "A1:C4", null, "A1:E41"};
+            for (int s = 0; s < SHEETS.length; s++) {
+                XSSFSheet sheet = workbook.getSheetAt(s);
+                assertEquals(SHEETS[s], sheet.getSheetName());
+                if (dimensions[s] != null) {
+                    assertEquals(dimensions[s], sheet.getCTWorksheet().getDimension().getRef(), SHEETS[s]);
+                    assertEquals(ROWS[s], sheet.getLastRowNum());
+                } else {
+                    assertEquals(-1, sheet.getLastRowNum());
+                }
+            }
+            assertEquals("id", workbook.getSheet("mid").getRow(0).getCell(0).getStringCellValue());
+            assertEquals("*****", workbook.getSheet("mid").getRow(7).getCell(1).getStringCellValue());
+            assertEquals("x28", workbook.getSheet("mid").getRow(7).getCell(4).getStringCellValue());
+        }
+        assertEquals(read(sequential), read(parallel));
+    }
+
+    @Test
+    void refusesATemplateWithoutTheSpliceMarkers() throws Exception {
+        String template = "<worksheet><dimension ref=\"A1\"/><sheetViews/><sheetData/><pageMargins/></worksheet>";
+        String[] around = StreamingXlsxMasker.splitTemplateSheet(template, "A1:C9", "data");
+        assertEquals("<worksheet><dimension ref=\"A1:C9\"/><sheetViews/>", around[0]);
+        assertEquals("<pageMargins/></worksheet>", around[1]);
+
+        IOException noSheetData = assertThrows(IOException.class, () -> StreamingXlsxMasker.splitTemplateSheet(
+            "<worksheet><dimension ref=\"A1\"/><sheetData></sheetData></worksheet>", "A1:C9", "data"));
+        assertTrue(noSheetData.getMessage().contains("'data'"), noSheetData.getMessage());
+        assertTrue(noSheetData.getMessage().contains("<sheetData/>"), noSheetData.getMessage());
+
+        IOException noDimension = assertThrows(IOException.class, () -> StreamingXlsxMasker.splitTemplateSheet(
+            "<worksheet><sheetData/></worksheet>", "A1:C9", "data"));
+        assertTrue(noDimension.getMessage().contains("<dimension ref=\"A1\"/>"), noDimension.getMessage());
+        // A sheet without rows keeps the template's dimension, so doesn't need one
+        assertEquals("<worksheet>", StreamingXlsxMasker.splitTemplateSheet(
+            "<worksheet><sheetData/></worksheet>", null, "data")[0]);
+    }
+
+    private static List<List<String>> read(Path path) throws Exception {
+        List<List<String>> cells = new ArrayList<>();
+        DataFormatter formatter = new DataFormatter();
+        try (InputStream in = Files.newInputStream(path); XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            for (Sheet sheet : workbook) {
+                for (Row row : sheet) {
+                    List<String> values = new ArrayList<>();
+                    values.add(sheet.getSheetName() + "!" + row.getRowNum());
+                    row.forEach(cell -> values.add(formatter.formatCellValue(cell)));
+                    cells.add(values);
+                }
+            }
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,267 @@
+package com.mask.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenVaultTest {
+
+    private static final String KEY = "test-secret";
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void concurrentInsertsAgreeOnOneSurrogatePerValue() throws Exception {
+        Map<String, String> seen = new ConcurrentHashMap<>();
+        TokenVault vault = openVault(KEY, 16);
+        try {
+            UnaryOperator<String> generator = value -> "tok" + ThreadLocalRandom.current().nextLong();
+            runConcurrently(thread -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < 20_000; i++) {
+                    String value = "user" + random.nextInt(5_000) + "@mail.com";
+                    String surrogate = vault.tokenize("email", value, generator);
+                    String previous = seen.putIfAbsent(value, surrogate);
+                    assertTrue(previous == null || previous.equals(surrogate), value);
+                }
+            });
+        } finally {
+            vault.close();
+        }
+        assertEquals(seen.size(), new HashSet<>(seen.values()).size());
+
+        // Stored surrogates survive a reopen, and whitespace around a value doesn't matter
+        TokenVault reopened = openVault(KEY, 16);
+        try {
+            for (Map.Entry<String, String> entry : seen.entrySet()) {
+                assertEquals(entry.getValue(), reopened.tokenize("email", " " + entry.getKey() + " ", value -> "new"));
+            }
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void givesDistinctValuesDistinctSurrogates() throws Exception {
+        Map<String, String> seen = new ConcurrentHashMap<>();
+        TokenVault vault = openVault(KEY, 12);
+        try {
+            // Far fewer possible outputs than values, so most first choices collide
+            UnaryOperator<String> generator = value -> "name" + ThreadLocalRandom.current().nextInt(50) + "@x.org";
+            runConcurrently(thread -> {
+                for (int i = 0; i < 400; i++) {
+                    String value = "value" + i;
+                    String surrogate = vault.tokenize("contact", value, generator);
+                    String previous = seen.putIfAbsent(value, surrogate);
+                    assertTrue(previous == null || previous.equals(surrogate), value);
+                }
+            });
+            // Domains are independent
+            assertEquals("name1@x.org", vault.tokenize("other", "value0", value -> "name1@x.org"));
+        } finally {
+            vault.close();
+        }
+        assertEquals(400, seen.size());
+        assertEquals(400, new HashSet<>(seen.values()).size());
+        for (String surrogate : seen.values()) {
+            assertTrue(surrogate.matches("name\\d+(-[0-9a-z]{5})?@x\\.org"), surrogate);
+        }
+    }
+
+    @Test
+    void closesWhileValuesAreTokenized() throws Exception {
+        TokenVault vault = openVault(KEY, 14);
+        AtomicBoolean closed = new AtomicBoolean();
+        CountDownLatch started = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                workers.add(executor.submit(() -> {
+                    started.countDown();
+                    int i = 0;
+                    // Keep going past the close, which must fall back to the generator
+                    while (!closed.get() || i % 1_000 != 0) {
+                        String value = "v" + thread + "-" + i++;
+                        assertEquals("s" + value, vault.tokenize("id", value, v -> "s" + v));
+                    }
+                    return null;
+                }));
+            }
+            started.await();
+            Thread.sleep(50);
+            vault.close();
+            closed.set(true);
+            for (Future<?> worker : workers) {
+                worker.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertFalse(vault.isEnabled());
+    }
+
+    @Test
+    void closeWaitsForAnInsertInFlightWithoutBlockingOthers() throws Exception {
+        TokenVault vault = openVault(KEY, 12);
+        CountDownLatch generating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> insert = executor.submit(() -> vault.tokenize("id", "slow", value -> {
+                generating.countDown();
+                try {
+                    release.await(1, TimeUnit.MINUTES);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow-token";
+            }));
+            assertTrue(generating.await(1, TimeUnit.MINUTES));
+
+            Future<?> close = executor.submit(() -> {
+                vault.close();
+                return null;
+            });
+            for (int i = 0; i < 100 && vault.isEnabled(); i++) {
+                Thread.sleep(10);
+            }
+            assertFalse(vault.isEnabled());
+            // Still unmapping only after the insert in flight is done
+            Thread.sleep(100);
+            assertFalse(close.isDone());
+            // Callers arriving meanwhile fall back to the generator instead of queueing behind close
+            assertEquals("fresh", vault.tokenize("id", "other", value -> "fresh"));
+
+            release.countDown();
+            assertEquals("slow-token", insert.get(1, TimeUnit.MINUTES));
+            close.get(1, TimeUnit.MINUTES);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        TokenVault reopened = openVault(KEY, 12);
+        try {
+            assertEquals("slow-token", reopened.tokenize("id", "slow", value -> "new"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void lookupsRunInParallelWithoutLocking() throws Exception {
+        TokenVault vault = openVault(KEY, 16);
+        try {
+            for (int i = 0; i < 1_000; i++) {
+                vault.tokenize("id", "value" + i, value -> "s" + value);
+            }
+            // Every call is a hit; a generator call would mean a lookup missed a stored value
+            UnaryOperator<String> missed = value -> {
+                throw new AssertionError("lookup missed " + value);
+            };
+            runConcurrently(thread -> {
+                Random random = new Random(thread);
+                for (int i = 0; i < 200_000; i++) {
+                    String value = "value" + random.nextInt(1_000);
+                    assertEquals("s" + value, vault.tokenize("id", value, missed));
+                }
+            });
+        } finally {
+            vault.close();
+        }
+    }
+
+    @Test
+    void refusesAVaultMadeWithAnotherKey() throws Exception {
+        openVault(KEY, 10).close();
+        IOException error = assertThrows(IOException.class, () -> openVault("other-secret", 10));
+        assertTrue(error.getMessage().contains("different app.masking.hash.hmac-key"), error.getMessage());
+    }
+
+    @Test
+    void validatesCapacity() throws Exception {
+        assertThrows(IOException.class, () -> openVault(KEY, 40));
+        assertThrows(IOException.class, () -> openVault(KEY, 4));
+        assertFalse(Files.exists(dir.resolve("vault.meta")));
+
+        // The stored layout wins over configuration, but is checked too
+        openVault(KEY, 10).close();
+        TokenVault reopened = openVault(KEY, 20);
+        reopened.close();
+        assertEquals(10, ReflectionTestUtils.getField(reopened, "capacityBits"));
+
+        Path meta = dir.resolve("vault.meta");
+        String layout = Files.readString(meta, StandardCharsets.UTF_8);
+        Files.writeString(meta, layout.replace("capacityBits=10", "capacityBits=63"), StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> openVault(KEY, 10));
+        Files.writeString(meta, layout.replace("capacityBits=10", "capacityBits=ten"), StandardCharsets.UTF_8);
+        assertThrows(IOException.class, () -> openVault(KEY, 10));
+    }
+
+    @Test
+    void requiresTheHmacKey() {
+        assertThrows(IllegalStateException.class, () -> openVault("", 10));
+    }
+
+    private TokenVault openVault(String key, int capacityBits) throws IOException {
+        TokenVault vault = new TokenVault();
+        ReflectionTestUtils.setField(vault, "enabled", true);
+        ReflectionTestUtils.setField(vault, "vaultDir", dir.toString());
+        ReflectionTestUtils.setField(vault, "capacityBits", capacityBits);
+        ReflectionTestUtils.setField(vault, "lockStripes", 64);
+        ReflectionTestUtils.setField(vault, "hmacKey", key);
+        vault.open();
+        return vault;
+    }
+
+    private static void runConcurrently(ThreadBody body) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                workers.add(executor.submit(() -> {
+                    body.run(thread);
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private interface ThreadBody {
+        void run(int thread) throws Exception;
+    }
+}
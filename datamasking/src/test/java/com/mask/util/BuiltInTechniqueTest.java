@@ -0,0 +1,113 @@
+package com.mask.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that each built-in technique declares a property exactly when its output has it,
+ * since the engine skips work on the strength of those declarations
+ */
+class BuiltInTechniqueTest {
+
+    private static final String[] KNOWN_VALUES = {
+        "a", "ab", "abc", "abcdefgh", " padded ", "\tx\t", "john.doe@example.com", "ab@x.org",
+        "+91 98765 43210", "(555) 123-4567", "9876543210", "4111 1111 1111 1111", "2024-02-29",
+        "15/01/2024", " 15-01-2024 ", "192.168.1.1", "ABCDE1234F", "caf\u00E9", "\uD83D\uDE00 x"
+    };
+
+    @Test
+    void declaresLengthPreservingExactlyWhenItIs() {
+        for (BuiltInTechnique technique : available()) {
+            UnaryOperator<String> masker = technique.compile("value");
+            boolean preserved = true;
+            for (String value : inputs()) {
+                String masked = withSeed(1, () -> masker.apply(value));
+                if (masked.length() != value.length()) {
+                    preserved = false;
+                    break;
+                }
+            }
+            assertEquals(technique.isLengthPreserving(), preserved, technique.getName());
+        }
+    }
+
+    @Test
+    void declaresDeterministicOnlyWhenSeedsDontMatter() {
+        for (BuiltInTechnique technique : available()) {
+            if (!technique.isDeterministic()) {
+                continue;
+            }
+            UnaryOperator<String> masker = technique.compile("value");
+            for (String value : inputs()) {
+                assertEquals(withSeed(1, () -> masker.apply(value)), withSeed(2, () -> masker.apply(value)),
+                    technique.getName() + " " + value);
+            }
+        }
+    }
+
+    @Test
+    void writesWhatItReturnsWhenAllocationFree() throws Exception {
+        for (BuiltInTechnique technique : available()) {
+            if (!technique.isAllocationFree()) {
+                continue;
+            }
+            UnaryOperator<String> masker = technique.compile("value");
+            MaskingTechnique.ValueWriter writer = technique.compileWriter("value");
+            assertNotNull(writer, technique.getName());
+            MaskBuffer buffer = new MaskBuffer();
+            for (String value : inputs()) {
+                writer.write(value, buffer.reset());
+                assertEquals(masker.apply(value), buffer.toString(), technique.getName() + " " + value);
+            }
+        }
+    }
+
+    private static List<BuiltInTechnique> available() {
+        List<BuiltInTechnique> techniques = new ArrayList<>();
+        for (BuiltInTechnique technique : BuiltInTechnique.values()) {
+            if (technique.isAvailable()) {
+                techniques.add(technique);
+            }
+        }
+        assertTrue(techniques.contains(BuiltInTechnique.FULL_MASK));
+        return techniques;
+    }
+
+    /**
+     * Known shapes plus random non-blank values, which is what maskers are given
+     */
+    private static List<String> inputs() {
+        Random random = new Random(9);
+        String alphabet = "0123456789abcXYZ@.-_+ /\t\u00E9";
+        List<String> inputs = new ArrayList<>(List.of(KNOWN_VALUES));
+        while (inputs.size() < 5_000) {
+            StringBuilder value = new StringBuilder();
+            int length = 1 + random.nextInt(24);
+            for (int i = 0; i < length; i++) {
+                value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (!value.toString().trim().isEmpty()) {
+                inputs.add(value.toString());
+            }
+        }
+        return inputs;
+    }
+
+    private static String withSeed(long seed, Supplier<String> mask) {
+        MaskingRandom previous = MaskingRandom.install(MaskingRandom.seeded(seed, null));
+        try {
+            return mask.get();
+        } finally {
+            MaskingRandom.install(previous);
+        }
+    }
+}
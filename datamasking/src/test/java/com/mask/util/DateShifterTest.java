@@ -0,0 +1,115 @@
+package com.mask.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares DateShifter with the regex and DateTimeFormatter date shift it replaced,
+ * drawing from the same seeded random source
+ */
+class DateShifterTest {
+
+    private static final Pattern DATE_ISO_PATTERN = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}$");
+    private static final Pattern DATE_SLASH_PATTERN = Pattern.compile("^\\d{2}/\\d{2}/\\d{4}$");
+    private static final Pattern DATE_DASH_PATTERN = Pattern.compile("^\\d{2}-\\d{2}-\\d{4}$");
+
+    private static final int[] YEARS = {0, 1, 2, 4, 100, 1600, 1900, 1999, 2000, 2023, 2024, 9998, 9999};
+
+    @Test
+    void shiftsLikeTheFormatterPath() {
+        List<String> inputs = inputs();
+        UnaryOperator<String> column = new DateShifter();
+        long seed = 0;
+        // Repeated so the column's learned layout meets every other layout too
+        for (int round = 0; round < 3; round++) {
+            for (String input : inputs) {
+                seed++;
+                String expected = withSeed(seed, () -> shiftWithFormatter(input));
+                assertEquals(expected, withSeed(seed, () -> column.apply(input)), input);
+                assertEquals(expected, withSeed(seed, () -> DateShifter.shiftAnyLayout(input)), input);
+                assertEquals(expected, withSeed(seed, () -> MaskingUtils.dateShift(input)), input);
+            }
+        }
+    }
+
+    @Test
+    void formatsLikeTheFormatters() {
+        String[] patterns = {"yyyy-MM-dd", "dd/MM/yyyy", "dd-MM-yyyy"};
+        int[] layouts = {PiiClassifier.DATE_ISO, PiiClassifier.DATE_SLASH, PiiClassifier.DATE_DASH};
+        LocalDate[] dates = {LocalDate.of(-1, 1, 1), LocalDate.of(0, 12, 31), LocalDate.of(1, 1, 1),
+            LocalDate.of(2024, 2, 29), LocalDate.of(9999, 12, 31), LocalDate.of(10000, 1, 1)};
+        for (int i = 0; i < patterns.length; i++) {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern(patterns[i]);
+            for (LocalDate date : dates) {
+                assertEquals(date.format(formatter), DateShifter.format(date, layouts[i]), date.toString());
+            }
+        }
+    }
+
+    /**
+     * Every day 00-32 and month 00-13 in each layout for years at the edges, plus values
+     * that are not dates
+     */
+    private static List<String> inputs() {
+        List<String> inputs = new ArrayList<>();
+        for (int year : YEARS) {
+            for (int month = 0; month <= 13; month++) {
+                for (int day = 0; day <= 32; day++) {
+                    inputs.add(String.format("%04d-%02d-%02d", year, month, day));
+                    inputs.add(String.format("%02d/%02d/%04d", day, month, year));
+                    inputs.add(String.format(" %02d-%02d-%04d\t", day, month, year));
+                }
+            }
+        }
+        inputs.addAll(List.of("", "  ", "abc", "2024-1-15", "2024/01/15", "15.01.2024", "x2024-01-15",
+            "\u0662\u0660\u0662\u0664-\u0660\u0661-\u0661\u0665"));
+        Collections.shuffle(inputs, new Random(5));
+        return inputs;
+    }
+
+    private static String shiftWithFormatter(String input) {
+        if (input == null || input.trim().isEmpty()) {
+            return input;
+        }
+        String trimmedInput = input.trim();
+        try {
+            DateTimeFormatter formatter = null;
+            if (DATE_ISO_PATTERN.matcher(trimmedInput).matches()) {
+                formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+            } else if (DATE_SLASH_PATTERN.matcher(trimmedInput).matches()) {
+                formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+            } else if (DATE_DASH_PATTERN.matcher(trimmedInput).matches()) {
+                formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+            }
+            if (formatter != null) {
+                LocalDate originalDate = LocalDate.parse(trimmedInput, formatter);
+                int shiftDays = MaskingRandom.current().nextInt(361) - 180;
+                return originalDate.plusDays(shiftDays).format(formatter);
+            }
+        } catch (DateTimeParseException e) {
+            // If parsing fails, return original
+        }
+        return trimmedInput;
+    }
+
+    private static String withSeed(long seed, Supplier<String> shift) {
+        MaskingRandom previous = MaskingRandom.install(MaskingRandom.seeded(seed, null));
+        try {
+            return shift.get();
+        } finally {
+            MaskingRandom.install(previous);
+        }
+    }
+}
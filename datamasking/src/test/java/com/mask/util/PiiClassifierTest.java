@@ -0,0 +1,181 @@
+package com.mask.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares every PiiClassifier check with the anchored regex it replaced
+ */
+class PiiClassifierTest {
+
+    // The patterns MaskingUtils used before the single-pass classifier
+    private static final Pattern EMAIL_PATTERN = Pattern.compile(
+        "^[A-Za-z0-9+_.-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,}$");
+    private static final Pattern PHONE_PATTERN = Pattern.compile(
+        "^(\\+\\d{1,3}[- ]?)?\\(?(\\d{3})\\)?[- ]?(\\d{3})[- ]?(\\d{4})$|^\\d{10}$");
+    private static final Pattern CREDIT_CARD_PATTERN = Pattern.compile(
+        "^(?:4[0-9]{12}(?:[0-9]{3})?|5[1-5][0-9]{14}|3[47][0-9]{13}|3[0-9]{13}|6(?:011|5[0-9]{2})[0-9]{12})$");
+    private static final Pattern AADHAAR_PATTERN = Pattern.compile("^[0-9]{4}\\s?[0-9]{4}\\s?[0-9]{4}$");
+    private static final Pattern PAN_PATTERN = Pattern.compile("^[A-Z]{5}[0-9]{4}[A-Z]{1}$");
+    private static final Pattern IPV4_PATTERN = Pattern.compile(
+        "^(?:(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)$");
+    private static final Pattern DATE_ISO_PATTERN = Pattern.compile("^\\d{4}-\\d{2}-\\d{2}$");
+    private static final Pattern DATE_SLASH_PATTERN = Pattern.compile("^\\d{2}/\\d{2}/\\d{4}$");
+    private static final Pattern DATE_DASH_PATTERN = Pattern.compile("^\\d{2}-\\d{2}-\\d{4}$");
+
+    private static final String[] KNOWN_VALUES = {
+        "4111111111111111", "4111 1111 1111 1111", "4111111111111112", "378282246310005", "30569309025904",
+        "6011111111111117", "5555555555554444", "192.168.1.1", "256.1.1.1", "01.02.003.4", "ABCDE1234F",
+        "abcde1234f", " 1234 5678 9012 ", "a@b.co", "a+b@c-d.org", "x@y.z", "2024-01-15", "15/01/2024",
+        "15-01-2024", "9876543210", "+91 98765 43210", "(555) 123-4567", "\u0130BCDE1234F", "stra\u00DFe"
+    };
+
+    @Test
+    void checksMatchTheOriginalPatterns() {
+        for (String value : inputs()) {
+            String trimmed = value.trim();
+            String digitsOnly = trimmed.replaceAll("[^\\d]", "");
+            PiiClassifier.Shape shape = PiiClassifier.scan(value);
+
+            assertEquals(EMAIL_PATTERN.matcher(trimmed).matches(), shape.isEmail(), value);
+            assertEquals(PHONE_PATTERN.matcher(digitsOnly).matches(), shape.isPhone(), value);
+            assertEquals(CREDIT_CARD_PATTERN.matcher(digitsOnly).matches(), shape.isCardNumber(), value);
+            assertEquals(AADHAAR_PATTERN.matcher(trimmed.replaceAll("\\s", "")).matches(), shape.isSpacedAadhaar(), value);
+            assertEquals(PAN_PATTERN.matcher(trimmed).matches(), shape.isPan(false), value);
+            assertEquals(PAN_PATTERN.matcher(trimmed.toUpperCase()).matches(), shape.isPan(true), value);
+            assertEquals(IPV4_PATTERN.matcher(trimmed).matches(), shape.isIpv4(), value);
+            assertEquals(isDateValue(trimmed), shape.dateFormat() != PiiClassifier.DATE_NONE, value);
+            if (shape.isCardNumber()) {
+                assertEquals(luhn(digitsOnly), shape.passesLuhn(), value);
+            }
+        }
+    }
+
+    @Test
+    void classifiesLikeTheRegexChain() {
+        for (String value : inputs()) {
+            assertEquals(classifyWithPatterns(value), PiiClassifier.classify(value), value);
+        }
+    }
+
+    @Test
+    void partiallyMasksLikeTheRegexChain() {
+        for (String value : inputs()) {
+            String expected = partialMaskWithPatterns(value);
+            if (expected != null) {
+                assertEquals(expected, MaskingUtils.partialMask(value), value);
+            }
+        }
+    }
+
+    /**
+     * Random values from alphabets that hit each type's boundaries, plus known examples
+     */
+    private static List<String> inputs() {
+        Random random = new Random(3);
+        String mixed = "0123456789abcXYZAP@.-_+ /\t:\u00E9\u0131\u00DF";
+        List<String> inputs = new ArrayList<>();
+        for (int i = 0; i < 300_000; i++) {
+            int length = random.nextInt(22);
+            int mode = random.nextInt(4);
+            StringBuilder value = new StringBuilder();
+            for (int j = 0; j < length; j++) {
+                if (mode == 0) {
+                    value.append(mixed.charAt(random.nextInt(mixed.length())));
+                } else if (mode == 1) {
+                    // Mostly digits with separators: phones, cards, Aadhaar, IPs and dates
+                    value.append(random.nextInt(10) < 8 ? (char) ('0' + random.nextInt(10)) : " .-/".charAt(random.nextInt(4)));
+                } else if (mode == 2) {
+                    // Letters and digits: PAN
+                    value.append(random.nextInt(3) == 0 ? (char) ('0' + random.nextInt(10))
+                        : (char) ((random.nextBoolean() ? 'A' : 'a') + random.nextInt(26)));
+                } else {
+                    value.append("ab1.@-_+Z".charAt(random.nextInt(9)));
+                }
+            }
+            inputs.add(value.toString());
+        }
+        inputs.addAll(List.of(KNOWN_VALUES));
+        return inputs;
+    }
+
+    private static String classifyWithPatterns(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        if (EMAIL_PATTERN.matcher(trimmed).matches()) {
+            return PiiClassifier.EMAIL;
+        }
+        String digitsOnly = trimmed.replaceAll("[^\\d]", "");
+        if (PHONE_PATTERN.matcher(digitsOnly).matches() && digitsOnly.length() >= 10) {
+            return PiiClassifier.PHONE;
+        }
+        // Detection now also wants a valid check digit
+        if (CREDIT_CARD_PATTERN.matcher(digitsOnly).matches() && luhn(digitsOnly)) {
+            return PiiClassifier.CARD;
+        }
+        if (AADHAAR_PATTERN.matcher(digitsOnly).matches() && digitsOnly.length() == 12) {
+            return PiiClassifier.AADHAAR;
+        }
+        if (PAN_PATTERN.matcher(trimmed.toUpperCase()).matches()) {
+            return PiiClassifier.PAN;
+        }
+        if (IPV4_PATTERN.matcher(trimmed).matches()) {
+            return PiiClassifier.IP;
+        }
+        return isDateValue(trimmed) ? PiiClassifier.DATE : null;
+    }
+
+    // The email and phone branches of partialMask before the classifier, null when neither applies
+    private static String partialMaskWithPatterns(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        if (EMAIL_PATTERN.matcher(trimmed).matches()) {
+            int atIndex = trimmed.indexOf('@');
+            String localPart = trimmed.substring(0, atIndex);
+            String domain = trimmed.substring(atIndex);
+            if (localPart.length() <= 2) {
+                return "*".repeat(localPart.length()) + domain;
+            }
+            return localPart.charAt(0) + "*".repeat(localPart.length() - 2)
+                + localPart.charAt(localPart.length() - 1) + domain;
+        }
+        String digitsOnly = trimmed.replaceAll("[^\\d]", "");
+        if (PHONE_PATTERN.matcher(digitsOnly).matches() && digitsOnly.length() >= 10) {
+            return "*".repeat(digitsOnly.length() - 4) + digitsOnly.substring(digitsOnly.length() - 4);
+        }
+        return null;
+    }
+
+    private static boolean isDateValue(String value) {
+        return DATE_ISO_PATTERN.matcher(value).matches()
+            || DATE_SLASH_PATTERN.matcher(value).matches()
+            || DATE_DASH_PATTERN.matcher(value).matches();
+    }
+
+    private static boolean luhn(String digits) {
+        int sum = 0;
+        boolean doubled = false;
+        for (int i = digits.length() - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return sum % 10 == 0;
+    }
+}